@@ -0,0 +1,79 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the SENSO greedy algorithm building blocks: running every 16 wire input
+ * through a 60 comparator network with run(int), and adding a comparator between two lattices.
+ *
+ * Compile together with SENSO/src, with jmh-core and jmh-generator-annprocess on the
+ * classpath, and run main.  The GC profiler is attached so allocation rates are reported too.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SensoBenchmark {
+    private static final int NUM_WIRES = 16;
+    private static final int NUM_COMPARATORS = 60;
+
+    private ComparisonNetwork network;
+    private Lattice lhs;
+    private Lattice rhs;
+
+    @Setup
+    public void setUp() {
+        Random rand = new Random(42);
+        ArrayList<Comparator> comparators = new ArrayList<>();
+
+        for (int i = 0; i < NUM_COMPARATORS; i++) {
+            int wireOne = rand.nextInt(NUM_WIRES - 1);
+            int wireTwo = wireOne + 1 + rand.nextInt(NUM_WIRES - wireOne - 1);
+            comparators.add(new Comparator(wireOne, wireTwo));
+        }
+
+        network = new ComparisonNetwork(NUM_WIRES, comparators);
+        lhs = new Lattice(NUM_WIRES, 1);
+        rhs = new Lattice(NUM_WIRES, 2);
+    }
+
+    @Benchmark
+    public void runAllInputs(Blackhole blackhole) {
+        for (int input = 0; input < (1 << NUM_WIRES); input++)
+            blackhole.consume(network.run(input));
+    }
+
+    @Benchmark
+    public Lattice addComparatorBetween() {
+        lhs.addComparatorBetween(rhs);
+        return lhs;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SensoBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -69,6 +69,30 @@ public class ComparisonNetwork {
         return unsorted;
     }
 
+    /**
+     * Counts the distinct unsorted outputs given by running every input on this network's
+     * wires through it, without boxing any of them.
+     *
+     * @return the number of distinct unsorted outputs
+     */
+
+    public int countUnsorted() {
+        long[] seen = new long[Math.max(1, (1 << wires) >>> 6)];
+        int unsorted = 0;
+
+        for (int input = 0; input < 1 << wires; input++) {
+            int output = run(input);
+
+            // an output is sorted if its ones fill the low bits
+            if ((output & (output + 1)) != 0 && (seen[output >>> 6] & (1L << output)) == 0) {
+                seen[output >>> 6] |= 1L << output;
+                unsorted++;
+            }
+        }
+
+        return unsorted;
+    }
+
     /**
      * Appends a comparator to this network.
      *
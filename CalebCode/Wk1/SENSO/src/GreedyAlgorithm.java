@@ -9,26 +9,45 @@ public class GreedyAlgorithm {
     private enum Utility {HIGHEST, MIDDLE, LOWEST}
 
     public static void main(String[] args) {
-        while (true)
-        {
-            ComparisonNetwork network = new ComparisonNetwork(NUM_WIRES);
+        ComparisonNetwork network = construct(Lattice.createAll(NUM_WIRES), new Random());
 
-            ArrayList<Lattice> lattices = new ArrayList<>();
-            for (int wire = 1; wire <= NUM_WIRES; wire++)
-                lattices.add(new Lattice(NUM_WIRES, wire));
+        HashSet<Integer> input = new HashSet<>();
+        for (int i = 0; i < (int) Math.pow(2, NUM_WIRES); i++)
+            input.add(i);
 
-            for (int i = 1; i <= NUM_WIRES / 2; i++)
-                computeSubgoal(i, lattices, network);
+        System.out.println(network.getUnsorted(input));
+        System.out.println(network.length());
+    }
 
-            HashSet<Integer> input = new HashSet<>();
-            for (int i = 0; i < (int) Math.pow(2, NUM_WIRES); i++)
-                input.add(i);
+    /**
+     * Builds one network greedily, one subgoal at a time, breaking ties between equally
+     * useful comparators at random.
+     *
+     * @param initialLattices the lattices of every wire before any comparator, which are
+     *                        copied and left unchanged so they can be shared between threads
+     * @param rand the random number generator to break ties with
+     * @return the network built.
+     */
 
-            System.out.println(network.getUnsorted(input));
-            System.out.println(network.length());
-            if (network.length() > 0)
-                break;
-        }
+    public static ComparisonNetwork construct(ArrayList<Lattice> initialLattices, Random rand) {
+        ComparisonNetwork network = new ComparisonNetwork(NUM_WIRES);
+
+        ArrayList<Lattice> lattices = new ArrayList<>(initialLattices.size());
+        for (Lattice lattice : initialLattices)
+            lattices.add(lattice.copy());
+
+        for (int i = 1; i <= NUM_WIRES / 2; i++)
+            computeSubgoal(i, lattices, network, rand);
+
+        return network;
+    }
+
+    /**
+     * @return the number of wires the greedy algorithm builds networks for.
+     */
+
+    public static int getNumWires() {
+        return NUM_WIRES;
     }
 
     /**
@@ -39,14 +58,15 @@ public class GreedyAlgorithm {
      * @param subgoal the subgoal being computed
      * @param lattices the lattices to keep track of the boolean function outputs
      * @param network the network to add the eventual comparator to.
+     * @param rand the random number generator to break ties with
      */
 
-    private static void computeSubgoal(int subgoal, ArrayList<Lattice> lattices, ComparisonNetwork network) {
+    private static void computeSubgoal(int subgoal, ArrayList<Lattice> lattices, ComparisonNetwork network, Random rand) {
         while (true) {
-            HashSet<Integer> zeros = getZeros(subgoal, lattices);
-            HashSet<Integer> ones = getOnes(subgoal, lattices);
+            int zeros = getZeros(subgoal, lattices);
+            int ones = getOnes(subgoal, lattices);
 
-            if (zeros.isEmpty() && ones.isEmpty())
+            if (zeros == 0 && ones == 0)
                 break;
 
             Map<Utility, ArrayList<Comparator>> utilities = Map.of(Utility.HIGHEST, new ArrayList<>(), Utility.MIDDLE, new ArrayList<>(), Utility.LOWEST, new ArrayList<>());
@@ -55,7 +75,7 @@ public class GreedyAlgorithm {
                 for (int wireTwo = wireOne + 1; wireTwo <= getDual(subgoal); wireTwo++)
                     utilities.get(assignUtility(zeros, ones, wireOne, wireTwo)).add(new Comparator(wireOne - 1, wireTwo - 1));
 
-            Comparator comparator = getNextComparator(utilities);
+            Comparator comparator = getNextComparator(utilities, rand);
             network.addComparator(comparator);
             lattices.get(comparator.getWireOne()).addComparatorBetween(lattices.get(comparator.getWireTwo()));
         }
@@ -65,33 +85,38 @@ public class GreedyAlgorithm {
      * Get the next comparator to be added, prioritizing by the highest utility.
      *
      * @param utilities the utilities map
+     * @param rand the random number generator to pick with
      * @return the comparator to be added.
      */
 
-    private static Comparator getNextComparator(Map<Utility, ArrayList<Comparator>> utilities) {
+    private static Comparator getNextComparator(Map<Utility, ArrayList<Comparator>> utilities, Random rand) {
         if (!utilities.get(Utility.HIGHEST).isEmpty())
-            return choice(utilities.get(Utility.HIGHEST));
+            return choice(utilities.get(Utility.HIGHEST), rand);
         else if (!utilities.get(Utility.MIDDLE).isEmpty())
-            return choice(utilities.get(Utility.MIDDLE));
+            return choice(utilities.get(Utility.MIDDLE), rand);
 
-        return choice(utilities.get(Utility.LOWEST));
+        return choice(utilities.get(Utility.LOWEST), rand);
     }
 
     /**
      * Assign a utility based on the usefulness of adding a comparator between the
      * specified two wires.
      *
-     * @param zeros wires where zeros need to be collected from
-     * @param ones wires where ones need to be collected from
+     * @param zeros wires where zeros need to be collected from, wire j in bit j
+     * @param ones wires where ones need to be collected from, wire j in bit j
      * @param wireOne the top wire of the comparator
      * @param wireTwo the bottom wire of the comparator
      * @return the assigned utility for the comparator at the given two wires.
      */
 
-    private static Utility assignUtility(HashSet<Integer> zeros, HashSet<Integer> ones, int wireOne, int wireTwo) {
-        if (zeros.contains(wireOne) && zeros.contains(wireTwo) && ones.contains(wireOne) && ones.contains(wireTwo))
+    private static Utility assignUtility(int zeros, int ones, int wireOne, int wireTwo) {
+        int both = (1 << wireOne) | (1 << wireTwo);
+        boolean zerosBoth = (zeros & both) == both;
+        boolean onesBoth = (ones & both) == both;
+
+        if (zerosBoth && onesBoth)
             return Utility.HIGHEST;
-        else if ((zeros.contains(wireOne) && zeros.contains(wireTwo)) || (ones.contains(wireOne) && ones.contains(wireTwo)))
+        else if (zerosBoth || onesBoth)
             return Utility.MIDDLE;
 
         return Utility.LOWEST;
@@ -99,27 +124,31 @@ public class GreedyAlgorithm {
 
     /**
      * Get all the wires where zeros can be collected from to compute the current subgoal.
+     * For every node of level subgoal + 1 where the subgoal wire is still 1, the first wire
+     * below it that is 0 there is a wire to collect from.  The nodes are handled 64 at a time.
      *
      * @param subgoal the subgoal being computed
      * @param lattices the lattices to keep track of the boolean function outputs
-     * @return the set of all wires where zeros need to be collected from.
+     * @return the wires where zeros need to be collected from, wire j in bit j.
      */
 
-    private static HashSet<Integer> getZeros(int subgoal, ArrayList<Lattice> lattices) {
-        HashSet<Integer> zeros = new HashSet<>();
-        ArrayList<Boolean> subgoalLevel = lattices.get(subgoal - 1).getLevel(subgoal + 1);
-
-        if (subgoalLevel.contains(true)) {
-            zeros.add(subgoal);
-
-            for (int i = 0; i < subgoalLevel.size(); i++) {
-                if (subgoalLevel.get(i)) {
-                    for (int j = subgoal + 1; j <= getDual(subgoal); j++) {
-                        if (!lattices.get(j - 1).getLevel(subgoal + 1).get(i)) {
-                            zeros.add(j);
-                            break;
-                        }
-                    }
+    private static int getZeros(int subgoal, ArrayList<Lattice> lattices) {
+        int level = subgoal + 1;
+        Lattice subgoalLattice = lattices.get(subgoal - 1);
+        int zeros = 0;
+
+        if (subgoalLattice.levelContains(level, true)) {
+            zeros |= 1 << subgoal;
+
+            for (int w = 0; w < subgoalLattice.levelWords(level); w++) {
+                long remaining = subgoalLattice.getWord(level, w);
+
+                for (int j = subgoal + 1; j <= getDual(subgoal) && remaining != 0; j++) {
+                    long values = lattices.get(j - 1).getWord(level, w);
+
+                    if ((remaining & ~values) != 0)
+                        zeros |= 1 << j;
+                    remaining &= values;
                 }
             }
         }
@@ -129,28 +158,31 @@ public class GreedyAlgorithm {
 
     /**
      * Get all the wires where ones can be collected from to compute the current dual.
+     * For every node of level dual where the dual wire is still 0, the first wire above it
+     * that is 1 there is a wire to collect from.  The nodes are handled 64 at a time.
      *
      * @param subgoal the subgoal being computed, its dual is the focus here
      * @param lattices the lattices to keep track of the boolean function outputs
-     * @return the set of all wires where ones need to be collected from.
+     * @return the wires where ones need to be collected from, wire j in bit j.
      */
 
-    private static HashSet<Integer> getOnes(int subgoal, ArrayList<Lattice> lattices) {
+    private static int getOnes(int subgoal, ArrayList<Lattice> lattices) {
         int dual = getDual(subgoal);
-        HashSet<Integer> ones = new HashSet<>();
-        ArrayList<Boolean> dualLevel = lattices.get(dual - 1).getLevel(dual);
-
-        if (dualLevel.contains(false)) {
-            ones.add(dual);
-
-            for (int i = 0; i < dualLevel.size(); i++) {
-                if (!dualLevel.get(i)) {
-                    for (int j = dual - 1; j >= subgoal ; j--) {
-                        if (lattices.get(j - 1).getLevel(dual).get(i)) {
-                            ones.add(j);
-                            break;
-                        }
-                    }
+        Lattice dualLattice = lattices.get(dual - 1);
+        int ones = 0;
+
+        if (dualLattice.levelContains(dual, false)) {
+            ones |= 1 << dual;
+
+            for (int w = 0; w < dualLattice.levelWords(dual); w++) {
+                long remaining = ~dualLattice.getWord(dual, w) & dualLattice.wordMask(dual, w);
+
+                for (int j = dual - 1; j >= subgoal && remaining != 0; j--) {
+                    long values = lattices.get(j - 1).getWord(dual, w);
+
+                    if ((remaining & values) != 0)
+                        ones |= 1 << j;
+                    remaining &= ~values;
                 }
             }
         }
@@ -173,12 +205,11 @@ public class GreedyAlgorithm {
      * Return a random element from the supplied list.
      *
      * @param comparators the list to pick from
+     * @param rand the random number generator to pick with
      * @return a random comparator.
      */
 
-    private static Comparator choice(ArrayList<Comparator> comparators) {
-        Random rand = new Random();
-
+    private static Comparator choice(ArrayList<Comparator> comparators, Random rand) {
         return comparators.get(rand.nextInt(comparators.size()));
     }
 
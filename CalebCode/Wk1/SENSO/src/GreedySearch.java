@@ -0,0 +1,134 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs many randomized greedy constructions in parallel and keeps the best networks found.
+ *
+ * The initial lattices are built once and every construction works on its own copy.  Each
+ * construction draws its ties from a Random seeded from SEED and its own number, so a run with
+ * an iteration budget builds the same networks whatever the number of threads.  The search
+ * stops when either MAX_CONSTRUCTIONS networks have been built or TIME_BUDGET_MS has passed.
+ *
+ * The networks are ranked by unsorted outputs and then by length, and the distribution of
+ * network lengths is reported along with how many networks of each length were built per
+ * second of CPU time.
+ */
+
+public class GreedySearch {
+    private static final int NUM_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final long MAX_CONSTRUCTIONS = 10000;
+    private static final long TIME_BUDGET_MS = 60000;
+    private static final int NUM_BEST = 10;
+    private static final long SEED = 42;
+
+    // a 64 bit odd constant used to spread the construction numbers over the seeds
+    private static final long SEED_STRIDE = 0x9E3779B97F4A7C15L;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        ArrayList<Lattice> initialLattices = Lattice.createAll(GreedyAlgorithm.getNumWires());
+
+        AtomicLong nextConstruction = new AtomicLong();
+        Map<Integer, LongAdder> lengths = new ConcurrentHashMap<>();
+        LongAdder cpuNanos = new LongAdder();
+        TreeSet<Result> best = new TreeSet<>();
+
+        long start = System.nanoTime();
+        long deadline = start + TIME_BUDGET_MS * 1000000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        ArrayList<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < NUM_THREADS; t++) {
+            workers.add(executor.submit(() -> {
+                long cpuStart = THREADS.getCurrentThreadCpuTime();
+
+                while (System.nanoTime() < deadline) {
+                    long construction = nextConstruction.getAndIncrement();
+                    if (construction >= MAX_CONSTRUCTIONS)
+                        break;
+
+                    Random rand = new Random(SEED + construction * SEED_STRIDE);
+                    ComparisonNetwork network = GreedyAlgorithm.construct(initialLattices, rand);
+                    Result result = new Result(construction, network);
+
+                    lengths.computeIfAbsent(result.length, k -> new LongAdder()).increment();
+                    synchronized (best) {
+                        best.add(result);
+                        if (best.size() > NUM_BEST)
+                            best.pollLast();
+                    }
+                }
+
+                cpuNanos.add(THREADS.getCurrentThreadCpuTime() - cpuStart);
+            }));
+        }
+
+        try {
+            for (Future<?> worker : workers)
+                worker.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+        double cpuSeconds = cpuNanos.sum() / 1e9;
+        long total = 0;
+        for (LongAdder count : lengths.values())
+            total += count.sum();
+
+        System.out.printf("Built %d networks in %.2f s (%.2f s of CPU on %d threads)%n", total,
+                wallSeconds, cpuSeconds, NUM_THREADS);
+        System.out.printf("%.1f networks per CPU second%n%n", total / cpuSeconds);
+
+        System.out.println("LENGTH | NETWORKS | PER CPU SECOND");
+        for (Map.Entry<Integer, LongAdder> entry : new TreeMap<>(lengths).entrySet())
+            System.out.printf("%6d | %8d | %14.2f%n", entry.getKey(), entry.getValue().sum(),
+                    entry.getValue().sum() / cpuSeconds);
+
+        System.out.println();
+        System.out.println("Best networks:");
+        for (Result result : best)
+            System.out.printf("#%d: length %d, %d unsorted: %s%n", result.construction,
+                    result.length, result.unsorted, result.network);
+    }
+
+    /**
+     * A network built by one greedy construction, ordered by unsorted outputs, then length,
+     * then construction number.
+     */
+
+    private static class Result implements Comparable<Result> {
+        private final long construction;
+        private final ComparisonNetwork network;
+        private final int length;
+        private final int unsorted;
+
+        private Result(long construction, ComparisonNetwork network) {
+            this.construction = construction;
+            this.network = network;
+            this.length = network.length();
+            this.unsorted = network.countUnsorted();
+        }
+
+        @Override
+        public int compareTo(Result other) {
+            if (unsorted != other.unsorted)
+                return Integer.compare(unsorted, other.unsorted);
+            if (length != other.length)
+                return Integer.compare(length, other.length);
+            return Long.compare(construction, other.construction);
+        }
+    }
+}
@@ -1,30 +1,95 @@
 import java.util.ArrayList;
-import java.util.HashMap;
 
 /**
  * A structure representing a boolean lattice, with each level being arranged in
  * increasing numerical order.
  *
+ * Node i of the lattice is the input i, with wire 1 as its most significant bit, and sits on
+ * level numWires - bitCount(i) + 1.  Each level is stored as a bitset of longs, bit k of a level
+ * holding the value of the k-th node of that level, so adding a comparator is one AND and one
+ * OR per word.
+ *
  * @author Caleb Beard
  */
 public class Lattice {
-    private HashMap<Integer, ArrayList<Boolean>> lattice;
-    private int numWires;
+    // levels[level - 1] is the bitset of that level
+    private final long[][] levels;
+    private final int[] levelSizes;
+    private final int numWires;
 
     public Lattice(int numWires, int wire) {
-        this.numWires = numWires;
-        lattice = new HashMap<>();
+        this(numWires);
+        int[] positions = new int[numWires + 1];
+        int shift = numWires - wire;
 
-        for (int i = 0; i < (int) Math.pow(2, numWires); i++) {
+        for (int i = 0; i < 1 << numWires; i++) {
             int level = numWires - Integer.bitCount(i) + 1;
-            String node = Integer.toBinaryString(i);
-            node = zfill(node, numWires);
+            int position = positions[level - 1]++;
+
+            if (((i >>> shift) & 1) != 0)
+                levels[level - 1][position >>> 6] |= 1L << position;
+        }
+    }
+
+    /**
+     * Creates a lattice with every node false.
+     *
+     * @param numWires the number of wires
+     */
+
+    private Lattice(int numWires) {
+        this.numWires = numWires;
+        this.levels = new long[numWires + 1][];
+        this.levelSizes = new int[numWires + 1];
+
+        // level L holds the nodes with numWires - L + 1 ones
+        long size = 1;
+        for (int level = 1; level <= numWires + 1; level++) {
+            levelSizes[level - 1] = (int) size;
+            levels[level - 1] = new long[(int) ((size + 63) >>> 6)];
+            size = size * (numWires - level + 1) / level;
+        }
+    }
+
+    /**
+     * Creates the lattices of every wire in one pass over the nodes, rather than one pass
+     * per wire.
+     *
+     * @param numWires the number of wires
+     * @return the lattices of wires 1 to numWires, in order.
+     */
+
+    public static ArrayList<Lattice> createAll(int numWires) {
+        ArrayList<Lattice> lattices = new ArrayList<>(numWires);
+        for (int wire = 1; wire <= numWires; wire++)
+            lattices.add(new Lattice(numWires));
 
-            if (!lattice.containsKey(level))
-                lattice.put(level, new ArrayList<>());
+        int[] positions = new int[numWires + 1];
+        for (int i = 0; i < 1 << numWires; i++) {
+            int level = numWires - Integer.bitCount(i) + 1;
+            int position = positions[level - 1]++;
+            long bit = 1L << position;
 
-            lattice.get(level).add(node.charAt(wire - 1) == '1');
+            // set the node on the lattice of every wire that is 1 in it
+            for (int bits = i; bits != 0; bits &= bits - 1) {
+                int wire = numWires - Integer.numberOfTrailingZeros(bits);
+                lattices.get(wire - 1).levels[level - 1][position >>> 6] |= bit;
+            }
         }
+
+        return lattices;
+    }
+
+    /**
+     * @return a deep copy of this lattice.
+     */
+
+    public Lattice copy() {
+        Lattice copy = new Lattice(numWires);
+        for (int level = 0; level < levels.length; level++)
+            System.arraycopy(levels[level], 0, copy.levels[level], 0, levels[level].length);
+
+        return copy;
     }
 
     /**
@@ -35,45 +100,117 @@ public class Lattice {
      */
 
     public void addComparatorBetween(Lattice rhs) {
-        for (int key : lattice.keySet()) {
-            for (int i = 0; i < lattice.get(key).size(); i++) {
-                boolean lhsVal = lattice.get(key).get(i);
-                boolean rhsVal = rhs.lattice.get(key).get(i);
+        for (int level = 0; level < levels.length; level++) {
+            long[] lhsWords = levels[level];
+            long[] rhsWords = rhs.levels[level];
 
-                lattice.get(key).set(i, lhsVal && rhsVal);
-                rhs.lattice.get(key).set(i, lhsVal || rhsVal);
+            for (int w = 0; w < lhsWords.length; w++) {
+                long lhsVal = lhsWords[w];
+                long rhsVal = rhsWords[w];
+
+                lhsWords[w] = lhsVal & rhsVal;
+                rhsWords[w] = lhsVal | rhsVal;
             }
         }
     }
 
     /**
-     * Get the wanted level of the lattice.
-     *
-     * @param level the level to get
-     * @return the wanted level.
+     * @param level the level of the node
+     * @param i the index of the node within its level
+     * @return the value of the node.
      */
 
-    public ArrayList<Boolean> getLevel(int level) {
-        return lattice.get(level);
+    public boolean get(int level, int i) {
+        return (levels[level - 1][i >>> 6] & (1L << i)) != 0;
     }
 
     /**
-     * Pads the given string on the left with zeros until it fills a given length.
+     * @param level the level
+     * @return the number of nodes on the level.
+     */
+
+    public int levelSize(int level) {
+        return levelSizes[level - 1];
+    }
+
+    /**
+     * @param level the level to search
+     * @param value the value to search for
+     * @return true if some node on the level has the given value.
+     */
+
+    public boolean levelContains(int level, boolean value) {
+        for (int w = 0; w < levels[level - 1].length; w++) {
+            long word = value ? levels[level - 1][w] : ~levels[level - 1][w] & wordMask(level, w);
+            if (word != 0)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param level the level
+     * @return the number of words in the bitset of the level.
+     */
+
+    public int levelWords(int level) {
+        return levels[level - 1].length;
+    }
+
+    /**
+     * @param level the level
+     * @param w the index of the word
+     * @return 64 nodes of the level, node 64 * w + k in bit k.
+     */
+
+    public long getWord(int level, int w) {
+        return levels[level - 1][w];
+    }
+
+    /**
+     * @param level the level
+     * @param w the index of the word
+     * @return a mask of the bits of the word that hold nodes of the level.
+     */
+
+    public long wordMask(int level, int w) {
+        int remaining = levelSizes[level - 1] - (w << 6);
+        return remaining >= 64 ? -1L : (1L << remaining) - 1;
+    }
+
+    /**
+     * Get the wanted level of the lattice as a list of booleans.  This boxes every node, so
+     * use get or getWord in loops.
      *
-     * @param string the string to pad
-     * @param length the length to fill
-     * @returnthe padded string.
+     * @param level the level to get
+     * @return the wanted level.
      */
 
-    private String zfill(String string, int length) {
-        while (string.length() != length)
-            string = "0" + string;
+    public ArrayList<Boolean> getLevel(int level) {
+        ArrayList<Boolean> values = new ArrayList<>(levelSize(level));
+        for (int i = 0; i < levelSize(level); i++)
+            values.add(get(level, i));
 
-        return string;
+        return values;
     }
 
     @Override
     public String toString() {
-        return lattice.toString();
+        StringBuilder str = new StringBuilder("{");
+        for (int level = 1; level <= numWires + 1; level++) {
+            if (level > 1)
+                str.append(", ");
+            str.append(level).append("=[");
+
+            for (int i = 0; i < levelSize(level); i++) {
+                if (i > 0)
+                    str.append(", ");
+                str.append(get(level, i));
+            }
+            str.append(']');
+        }
+
+        return str.append('}').toString();
     }
 }
@@ -23,7 +23,19 @@ public class Comparator {
      */
 
     public static Comparator getRandom(int wires) {
-        Random rand = new Random();
+        return getRandom(wires, new Random());
+    }
+
+    /**
+     * A static method to get a random comparator operating on a set number of wires, using
+     * the supplied random number generator.
+     *
+     * @param wires the number of wires the comparator can choose from
+     * @param rand the random number generator to use
+     * @return the randomly generated comparator
+     */
+
+    public static Comparator getRandom(int wires, Random rand) {
         int wireOne = rand.nextInt(wires);
         int wireTwo = rand.nextInt(wires);
 
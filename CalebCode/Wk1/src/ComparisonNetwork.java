@@ -54,12 +54,23 @@ public class ComparisonNetwork {
      */
 
     public void randomize(int numComparisons) {
+        randomize(numComparisons, new Random());
+    }
+
+    /**
+     * Randomize the comparators in this network using the supplied random number generator.
+     *
+     * @param numComparisons the number of comparators to be used.
+     * @param rand the random number generator to use
+     */
+
+    public void randomize(int numComparisons, Random rand) {
         if (comparisons.isEmpty())
             for (int i = 0; i < numComparisons; i++)
-                comparisons.add(Comparator.getRandom(wires));
+                comparisons.add(Comparator.getRandom(wires, rand));
         else
             for (int i = 0; i < numComparisons; i++)
-                comparisons.set(i, Comparator.getRandom(wires));
+                comparisons.set(i, Comparator.getRandom(wires, rand));
     }
 
     /**
@@ -86,6 +97,116 @@ public class ComparisonNetwork {
         return input;
     }
 
+    /**
+     * Run a packed input through the network and produce a packed output, without boxing.
+     * Wire i is bit wires - 1 - i of the input, as in getAllBinarySequences.
+     *
+     * @param input the packed input to be run
+     * @return the packed output of the network
+     */
+
+    public int run(int input) {
+        for (Comparator comparator : comparisons) {
+            int bitOne = wires - 1 - comparator.getWireOne();
+            int bitTwo = wires - 1 - comparator.getWireTwo();
+
+            // swap when wire one holds a 1 and wire two holds a 0
+            if (((input >>> bitOne) & 1) > ((input >>> bitTwo) & 1))
+                input ^= (1 << bitOne) | (1 << bitTwo);
+        }
+
+        return input;
+    }
+
+    /**
+     * Gets the unique unsorted outputs given by running the inputs of a source through this
+     * network.
+     *
+     * @param inputs the source of inputs to test
+     * @return the packed unsorted outputs, in increasing order
+     */
+
+    public int[] getUnsorted(InputSource inputs) {
+        long[] seen = new long[bitmapWords()];
+        inputs.stream(false).forEach(input -> markUnsorted(run(input), seen));
+
+        int[] unsorted = new int[cardinality(seen)];
+        int i = 0;
+        for (int word = 0; word < seen.length; word++)
+            for (long bits = seen[word]; bits != 0; bits &= bits - 1)
+                unsorted[i++] = (word << 6) | Long.numberOfTrailingZeros(bits);
+
+        return unsorted;
+    }
+
+    /**
+     * Counts the unique unsorted outputs given by running the inputs of a source through this
+     * network.
+     *
+     * @param inputs the source of inputs to test
+     * @return the number of unsorted outputs
+     */
+
+    public int countUnsorted(InputSource inputs) {
+        long[] seen = new long[bitmapWords()];
+        inputs.stream(false).forEach(input -> markUnsorted(run(input), seen));
+
+        return cardinality(seen);
+    }
+
+    /**
+     * Counts the unique unsorted outputs given by running the inputs of a source through this
+     * network, but stops as soon as the count reaches the cutoff.
+     *
+     * @param inputs the source of inputs to test
+     * @param cutoff the count at which to stop testing
+     * @return the number of unsorted outputs, or cutoff if there are at least that many
+     */
+
+    public int countUnsorted(InputSource inputs, int cutoff) {
+        long[] seen = new long[bitmapWords()];
+        int[] count = new int[1];
+        Spliterator.OfInt it = inputs.spliterator();
+
+        while (count[0] < cutoff && it.tryAdvance((int input) -> {
+            if (markUnsorted(run(input), seen))
+                count[0]++;
+        })) {
+            // keep testing until the inputs run out or the cutoff is reached
+        }
+
+        return Math.min(count[0], cutoff);
+    }
+
+    /**
+     * Marks a packed output in a bitmap if it is unsorted.  A packed output is sorted when
+     * its ones fill the low bits, i.e. all the ones are on the last wires.
+     *
+     * @param output the packed output
+     * @param seen the bitmap of unsorted outputs seen so far
+     * @return true if the output is unsorted and was not seen before
+     */
+
+    private static boolean markUnsorted(int output, long[] seen) {
+        if ((output & (output + 1)) == 0 || (seen[output >>> 6] & (1L << output)) != 0)
+            return false;
+
+        seen[output >>> 6] |= 1L << output;
+        return true;
+    }
+
+    private int bitmapWords() {
+        return Math.max(1, (1 << wires) >>> 6);
+    }
+
+    private static int cardinality(long[] bitmap) {
+        int count = 0;
+        for (long word : bitmap)
+            count += Long.bitCount(word);
+
+        return count;
+    }
+
     /**
      * Gets the set of unsorted outputs given by running a set of inputs through this network.
      *
@@ -0,0 +1,104 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A source of binary inputs for a comparison network, streamed as packed ints instead of a set
+ * of lists.  Wire 0 is the most significant of the wires bits, so input i is the binary
+ * sequence getAllBinarySequences builds from i.
+ *
+ * A source can be every input, a subset such as the unsorted outputs of Green32, or a random
+ * sample.  Its spliterator can be split, so a source can also be evaluated in parallel.
+ */
+
+public abstract class InputSource {
+    // the largest number of wires, so that a bitmap of every output still fits in memory
+    public static final int MAX_WIRES = 30;
+
+    private final int wires;
+
+    private InputSource(int wires) {
+        if (wires < 1 || wires > MAX_WIRES)
+            throw new IllegalArgumentException("An InputSource holds 1 to " + MAX_WIRES + " wires, not " + wires + ".");
+
+        this.wires = wires;
+    }
+
+    /**
+     * @param wires the number of wires
+     * @return a source of all 2^wires inputs, in increasing order
+     */
+
+    public static InputSource all(int wires) {
+        return new InputSource(wires) {
+            @Override
+            public int size() { return 1 << wires; }
+
+            @Override
+            public Spliterator.OfInt spliterator() { return IntStream.range(0, 1 << wires).spliterator(); }
+        };
+    }
+
+    /**
+     * @param wires the number of wires
+     * @param inputs the packed inputs, such as the unsorted outputs of another network
+     * @return a source of the given inputs
+     */
+
+    public static InputSource of(int wires, int[] inputs) {
+        int[] copy = inputs.clone();
+
+        return new InputSource(wires) {
+            @Override
+            public int size() { return copy.length; }
+
+            @Override
+            public Spliterator.OfInt spliterator() { return Arrays.spliterator(copy); }
+        };
+    }
+
+    /**
+     * A source of inputs drawn uniformly at random, with replacement.  The same seed always
+     * gives the same inputs.
+     *
+     * @param wires the number of wires
+     * @param count the number of inputs to draw
+     * @param seed the seed to draw the inputs with
+     * @return a source of count random inputs
+     */
+
+    public static InputSource sample(int wires, int count, long seed) {
+        return new InputSource(wires) {
+            @Override
+            public int size() { return count; }
+
+            @Override
+            public Spliterator.OfInt spliterator() { return new SplittableRandom(seed).ints(count, 0, 1 << wires).spliterator(); }
+        };
+    }
+
+    public int getWires() { return wires; }
+
+    /**
+     * @return the number of inputs this source hands out
+     */
+
+    public abstract int size();
+
+    /**
+     * @return a new spliterator over the packed inputs
+     */
+
+    public abstract Spliterator.OfInt spliterator();
+
+    /**
+     * @param parallel whether the stream should be parallel
+     * @return a new stream of the packed inputs
+     */
+
+    public IntStream stream(boolean parallel) {
+        return StreamSupport.intStream(spliterator(), parallel);
+    }
+}
@@ -1,4 +1,8 @@
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A main script to test all of the random networks with pure randomness, hill climbing,
@@ -12,13 +16,34 @@ public class Tester  {
     private static final int NUM_ALGO_TESTS = 10;
     private static final Map<Integer, Integer> BEST_KNOWN_COMPARISONS = Map.of(12, 39, 13, 45, 14, 51, 15, 56, 16, 60);
 
+    private static final Random SEEDS = new Random();
+
+    // Stop testing a mutated network once it is no better than the current one.  Rejected
+    // networks then only count up to the current fitness, so the average fitness of HC and SA
+    // becomes a lower bound.  Off by default, so that the printed averages are exact.
+    private static final boolean EARLY_ABORT = false;
+
     private enum Algorithm {HC, SA}
 
+    /**
+     * The best fitness found by one restart of an algorithm, and the sum of every fitness it tested.
+     */
+
+    private static class RestartResult {
+        private final int bestFitness;
+        private final long totalFitness;
+
+        private RestartResult(int bestFitness, long totalFitness) {
+            this.bestFitness = bestFitness;
+            this.totalFitness = totalFitness;
+        }
+    }
+
     public static void main(String[] args) {
-        HashSet<ArrayList<Integer>> inputs;
+        InputSource inputs;
 
         for (int wires = 12; wires <= 16; wires++) {
-            inputs = ComparisonNetwork.getAllBinarySequences(wires);
+            inputs = InputSource.all(wires);
 
             randomNetworks(wires, inputs, BEST_KNOWN_COMPARISONS.get(wires));
             runAlgorithm(wires, Algorithm.HC, inputs, BEST_KNOWN_COMPARISONS.get(wires));
@@ -26,7 +51,7 @@ public class Tester  {
         }
 
         ComparisonNetwork green32 = getGreen32();
-        inputs = green32.getUnsorted(ComparisonNetwork.getAllBinarySequences(16));
+        inputs = InputSource.of(16, green32.getUnsorted(InputSource.all(16)));
 
         randomNetworks(16, inputs, 28);
         runAlgorithm(16, Algorithm.HC, inputs, 28);
@@ -41,7 +66,7 @@ public class Tester  {
      * @param numComparisons number of comparisons to use in the network
      */
 
-    private static void randomNetworks(int wires, HashSet<ArrayList<Integer>> inputs, int numComparisons) {
+    private static void randomNetworks(int wires, InputSource inputs, int numComparisons) {
         long start = System.currentTimeMillis();
         int bestFitness = (int) Math.pow(2, wires);
         int totalFitness = 0;
@@ -51,7 +76,7 @@ public class Tester  {
 
         for (int i = 0; i < NUM_TEST_CASES; i++) {
             network.randomize(numComparisons);
-            fitness = network.getUnsorted(inputs).size();
+            fitness = network.countUnsorted(inputs);
             totalFitness += fitness;
 
             if (fitness < bestFitness)
@@ -70,7 +95,8 @@ public class Tester  {
 
     /**
      * Runs the specified algorithm (hill climbing or simulated annealing) on random
-     * networks and tests their fitness.
+     * networks and tests their fitness.  The NUM_ALGO_TESTS restarts are independent, so
+     * they are run in parallel, each with its own random number generator.
      *
      * @param wires the number of wires for the networks
      * @param algorithm the algorithm to use
@@ -78,40 +104,31 @@ public class Tester  {
      * @param numComparisons the number of comparisons to use
      */
 
-    private static void runAlgorithm(int wires, Algorithm algorithm, HashSet<ArrayList<Integer>> inputs, int numComparisons) {
+    private static void runAlgorithm(int wires, Algorithm algorithm, InputSource inputs, int numComparisons) {
         long start = System.currentTimeMillis();
-        Random rand = new Random();
         int bestFitness = (int) Math.pow(2, wires);
-        int totalFitness = 0;
+        long totalFitness = 0;
 
-        ComparisonNetwork network = new ComparisonNetwork(wires);
-        ComparisonNetwork mutated;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(NUM_ALGO_TESTS, Runtime.getRuntime().availableProcessors()));
+        List<Future<RestartResult>> restarts = new ArrayList<>();
 
         for (int i = 0; i < NUM_ALGO_TESTS; i++) {
-            network.randomize(numComparisons);
-            int bestIterFitness = network.getUnsorted(inputs).size();
-            totalFitness += bestIterFitness;
+            long seed = SEEDS.nextLong();
+            restarts.add(executor.submit(() -> runRestart(wires, algorithm, inputs, numComparisons, new Random(seed))));
+        }
 
-            for (int j = 1; j < NUM_TEST_CASES / NUM_ALGO_TESTS; j++) {
-                mutated = mutate(network);
-                int fitness = mutated.getUnsorted(inputs).size();
+        try {
+            for (Future<RestartResult> restart : restarts) {
+                RestartResult result = restart.get();
+                totalFitness += result.totalFitness;
 
-                // If the algorithm is HC, only accept the mutation if it produces a better network.
-                // Otherwise, if the algorithm is SA, based on a probability sometimes a worse network may be accepted.
-                if (fitness < bestIterFitness) {
-                    network = mutated;
-                    bestIterFitness = fitness;
-                } else if (algorithm == Algorithm.SA) {
-                    int probability = NUM_TEST_CASES / NUM_ALGO_TESTS - j;
-                    if (rand.nextInt(NUM_TEST_CASES / NUM_ALGO_TESTS) < probability)
-                        network = mutated;
-                }
-
-                totalFitness += fitness;
+                if (result.bestFitness < bestFitness)
+                    bestFitness = result.bestFitness;
             }
-
-            if (bestIterFitness < bestFitness)
-                bestFitness = bestIterFitness;
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("A restart of the algorithm failed.", e);
+        } finally {
+            executor.shutdown();
         }
 
         double avgFitness = (double) totalFitness / NUM_TEST_CASES;
@@ -124,22 +141,62 @@ public class Tester  {
         System.out.println();
     }
 
+    /**
+     * Runs a single restart of the specified algorithm, starting from a new random network.
+     *
+     * @param wires the number of wires for the network
+     * @param algorithm the algorithm to use
+     * @param inputs the inputs for testing
+     * @param numComparisons the number of comparisons to use
+     * @param rand the random number generator used by this restart only
+     * @return the best fitness of this restart and the sum of every fitness it tested
+     */
+
+    private static RestartResult runRestart(int wires, Algorithm algorithm, InputSource inputs, int numComparisons, Random rand) {
+        ComparisonNetwork network = new ComparisonNetwork(wires);
+        ComparisonNetwork mutated;
+
+        network.randomize(numComparisons, rand);
+        int bestIterFitness = network.countUnsorted(inputs);
+        long totalFitness = bestIterFitness;
+
+        for (int j = 1; j < NUM_TEST_CASES / NUM_ALGO_TESTS; j++) {
+            mutated = mutate(network, rand);
+            int fitness = EARLY_ABORT ? mutated.countUnsorted(inputs, bestIterFitness) : mutated.countUnsorted(inputs);
+
+            // If the algorithm is HC, only accept the mutation if it produces a better network.
+            // Otherwise, if the algorithm is SA, based on a probability sometimes a worse network may be accepted.
+            if (fitness < bestIterFitness) {
+                network = mutated;
+                bestIterFitness = fitness;
+            } else if (algorithm == Algorithm.SA) {
+                int probability = NUM_TEST_CASES / NUM_ALGO_TESTS - j;
+                if (rand.nextInt(NUM_TEST_CASES / NUM_ALGO_TESTS) < probability)
+                    network = mutated;
+            }
+
+            totalFitness += fitness;
+        }
+
+        return new RestartResult(bestIterFitness, totalFitness);
+    }
+
     /**
      * Defines what it means to mutate a comparison network.
      *
      * @param network the network to mutate
+     * @param rand the random number generator to use
      * @return the mutated network
      */
 
-    private static ComparisonNetwork mutate(ComparisonNetwork network) {
+    private static ComparisonNetwork mutate(ComparisonNetwork network, Random rand) {
         // This definition of mutation is:
         //      Get a random index
         //      Generate a random comparator and replace the one at that index
         ComparisonNetwork mutated = new ComparisonNetwork(network.getWires(), new ArrayList<>(network.getComparisons()));
-        Random rand = new Random();
         int index = rand.nextInt(network.getWires());
 
-        mutated.getComparisons().set(index, Comparator.getRandom(network.getWires()));
+        mutated.getComparisons().set(index, Comparator.getRandom(network.getWires(), rand));
 
         return mutated;
     }
@@ -0,0 +1,126 @@
+package benchmarks;
+
+import environment.BinarySequence;
+import environment.ComparisonNetwork;
+import environment.CompiledNetwork;
+import environment.NetworkCompiler;
+import environment.NetworkUtilities;
+import environment.OutputSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for evaluating a comparison network on all binary inputs, and on the 151
+ * unsorted outputs of Green32.
+ *
+ * operateOnAllBinary is the object-per-input baseline; every other evaluator is measured
+ * against it on the same random network (of best known size) for 12 - 16 wires. Running main
+ * attaches the GC profiler, so every result also reports the allocation rate
+ * (gc.alloc.rate.norm is the number of bytes allocated per evaluation).
+ *
+ * To run, build benchmarks.jar with the pom.xml in this package (mvn -B package, from this
+ * directory), then run java -jar target/benchmarks.jar, optionally followed by the name of a
+ * benchmark class. This class's main method runs it with the GC profiler from an IDE.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EvaluationBenchmark {
+
+    // the seed used to build every benchmarked network, so runs are comparable
+    private static final long SEED = 42;
+
+    @Param({"12", "13", "14", "15", "16"})
+    private int numWires;
+
+    private ComparisonNetwork network;
+    private CompiledNetwork compiledNetwork;
+    private ComparisonNetwork completion;
+    private Set<BinarySequence> green32Outputs;
+    private OutputSet green32OutputSet;
+
+    @Setup
+    public void setUp() {
+        Random rand = new Random(SEED);
+        network = NetworkUtilities.createRandomNetwork(numWires, NetworkUtilities.bestKnownSize(numWires), rand);
+        compiledNetwork = NetworkCompiler.compile(network);
+        completion = NetworkUtilities.createRandomNetwork(16, 28, rand);
+        green32Outputs = NetworkUtilities.getGreen32Outputs();
+        green32OutputSet = new OutputSet(16, green32Outputs);
+    }
+
+    @Benchmark
+    public Set<BinarySequence> operateOnAllBinary() {
+        return network.operateOnAllBinary();
+    }
+
+    @Benchmark
+    public Set<BinarySequence> operateOnAllBinaryBitSliced() {
+        return network.operateOnAllBinaryBitSliced();
+    }
+
+    @Benchmark
+    public OutputSet unsortedOutputSet() {
+        return network.unsortedOutputSet();
+    }
+
+    @Benchmark
+    public OutputSet compiledUnsortedOutputSet() {
+        return compiledNetwork.unsortedOutputSet();
+    }
+
+    @Benchmark
+    public long operateOnAllPacked() {
+        long sum = 0;
+        for (long input = 0; input < 1L << numWires; input++)
+            sum += network.operateOnOneBinary(input);
+        return sum;
+    }
+
+    @Benchmark
+    public long compiledOperateOnAllPacked() {
+        long sum = 0;
+        for (long input = 0; input < 1L << numWires; input++)
+            sum += compiledNetwork.operateOnOneBinary(input);
+        return sum;
+    }
+
+    @Benchmark
+    public Set<BinarySequence> operateOnTheseBinaryGreen32() {
+        return completion.operateOnTheseBinary(green32Outputs);
+    }
+
+    @Benchmark
+    public OutputSet unsortedOutputSetGreen32() {
+        return completion.unsortedOutputSet(green32OutputSet);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(EvaluationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,76 @@
+package benchmarks;
+
+import environment.ComparisonNetwork;
+import environment.NetworkUtilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the building blocks of the random and hill-climbing searches on 16 wires
+ * with 60 comparators: creating a random network, mutating one, and a whole hill-climbing step
+ * (mutate, then evaluate the mutant on all binary inputs).
+ *
+ * Mutants are made with copyMutate, as the searches do, so the network being mutated is the
+ * same in every invocation and results do not drift with the number of iterations.
+ *
+ * See EvaluationBenchmark for how to run these.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+
+    private static final int NUM_WIRES = 16;
+    private static final int NUM_COMPARATORS = 60;
+
+    private Random rand;
+    private ComparisonNetwork network;
+
+    @Setup
+    public void setUp() {
+        rand = new Random(42);
+        network = NetworkUtilities.createRandomNetwork(NUM_WIRES, NUM_COMPARATORS, rand);
+    }
+
+    @Benchmark
+    public ComparisonNetwork createRandomNetwork() {
+        return NetworkUtilities.createRandomNetwork(NUM_WIRES, NUM_COMPARATORS, rand);
+    }
+
+    @Benchmark
+    public ComparisonNetwork copyMutate() {
+        return NetworkUtilities.copyMutate(network, rand);
+    }
+
+    @Benchmark
+    public int hillClimbStep() {
+        return NetworkUtilities.copyMutate(network, rand).unsortedOutputSet().size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SearchBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,28 @@
+package environment;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for a move a search kept, recorded through SearchMetrics. Plotting
+ * the fitness of these events against their iteration shows how a search improves over time.
+ */
+@Name("environment.AcceptedMove")
+@Label("Accepted Move")
+@Category("Sorting Networks")
+@Description("A mutation kept by a search")
+@StackTrace(false)
+public final class AcceptedMoveEvent extends jdk.jfr.Event {
+
+    @Label("Iteration")
+    long iteration;
+
+    @Label("Previous Fitness")
+    int previousFitness;
+
+    @Label("Fitness")
+    int fitness;
+}
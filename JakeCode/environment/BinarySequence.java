@@ -125,9 +125,9 @@ public class BinarySequence {
      */
     @Override
     public String toString() {
-        String seq = "";
+        StringBuilder seq = new StringBuilder(binarySequence.length);
         for (int i = 0; i < binarySequence.length; i++)
-            seq += binarySequence[i];
-        return seq;
+            seq.append(binarySequence[i]);
+        return seq.toString();
     }
 }
@@ -0,0 +1,313 @@
+package environment;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A class that evaluates a comparison network on all binary inputs using bit-slicing.
+ *
+ * Instead of feeding one BinarySequence at a time into the network, every wire is stored as a
+ * long whose 64 bits hold the value of that wire for 64 different inputs. A comparator then
+ * becomes one AND (the top wire keeps the minimum) and one OR (the bottom wire keeps the
+ * maximum) per word, so 64 inputs are sorted by every comparator at once.
+ *
+ * Inputs are numbered the same way BinarySequence.incrementByOne() walks them: wire 0 is the
+ * most significant bit and wire numWires - 1 is the least significant bit. Input x lives in
+ * block x / 64 at bit x % 64.
+ */
+final class BitSlicedEvaluator {
+
+    // the number of inputs held in one long
+    static final int LANES = 64;
+
+    // bit j of LANE_PATTERNS[p] is bit p of the lane index j
+    private static final long[] LANE_PATTERNS = {
+            0xAAAAAAAAAAAAAAAAL,
+            0xCCCCCCCCCCCCCCCCL,
+            0xF0F0F0F0F0F0F0F0L,
+            0xFF00FF00FF00FF00L,
+            0xFFFF0000FFFF0000L,
+            0xFFFFFFFF00000000L
+    };
+
+    private BitSlicedEvaluator() {
+    }
+
+    /**
+     * Evaluates the network on every binary input and collects the unsorted outputs.
+     *
+     * @param network the network to evaluate
+     * @return the unsorted binarySequence outputs produced by the network
+     */
+    static Set<BinarySequence> operateOnAllBinary(ComparisonNetwork network) {
+        Set<BinarySequence> unsortedOutputs = new HashSet<>();
+        collectUnsorted(network.numWires(), topWires(network), bottomWires(network), 0,
+                numBlocks(network.numWires()), unsortedOutputs);
+        return unsortedOutputs;
+    }
+
+    /**
+     * Evaluates the network on every binary input and collects the unsorted outputs into a
+     * bitmap.
+     *
+     * @param network the network to evaluate
+     * @return the unsorted outputs produced by the network
+     */
+    static OutputSet unsortedOutputSet(ComparisonNetwork network) {
+        int numWires = network.numWires();
+        int[] tops = topWires(network);
+        int[] bottoms = bottomWires(network);
+        long[] wires = new long[numWires];
+        OutputSet unsortedOutputs = new OutputSet(numWires);
+
+        for (long block = 0; block < numBlocks(numWires); block++) {
+            loadBlock(wires, block);
+            applyComparators(wires, tops, bottoms);
+            addUnsorted(wires, unsortedOutputs);
+        }
+        SearchMetrics.countInputs(numBlocks(numWires) * inputsPerBlock(numWires));
+        return unsortedOutputs;
+    }
+
+    /**
+     * Counts the distinct unsorted outputs of the network on every binary input, giving up as
+     * soon as the count reaches the cutoff.
+     *
+     * @param network the network to evaluate
+     * @param cutoff the count at which to stop evaluating
+     * @return the number of distinct unsorted outputs, or cutoff if there are at least that many
+     */
+    static int countUnsorted(ComparisonNetwork network, int cutoff) {
+        int numWires = network.numWires();
+        int[] tops = topWires(network);
+        int[] bottoms = bottomWires(network);
+        long[] wires = new long[numWires];
+        OutputSet unsortedOutputs = new OutputSet(numWires);
+
+        long block = 0;
+        for (; block < numBlocks(numWires) && unsortedOutputs.size() < cutoff; block++) {
+            loadBlock(wires, block);
+            applyComparators(wires, tops, bottoms);
+            addUnsorted(wires, unsortedOutputs);
+        }
+        SearchMetrics.countInputs(block * inputsPerBlock(numWires));
+        return Math.min(unsortedOutputs.size(), cutoff);
+    }
+
+    /**
+     * Counts the distinct unsorted outputs of several networks with the same number of wires on
+     * every binary input. Each block of inputs is loaded once and then run through every network
+     * while it is still in cache, rather than once per network.
+     *
+     * @param networks the networks to evaluate
+     * @return the number of distinct unsorted outputs of each network, in order
+     */
+    static int[] countUnsorted(List<ComparisonNetwork> networks) {
+        int[] counts = new int[networks.size()];
+        if (networks.isEmpty())
+            return counts;
+
+        int numWires = networks.get(0).numWires();
+        int[][] tops = new int[networks.size()][];
+        int[][] bottoms = new int[networks.size()][];
+        OutputSet[] unsortedOutputs = new OutputSet[networks.size()];
+        for (int n = 0; n < networks.size(); n++) {
+            ComparisonNetwork network = networks.get(n);
+            if (network.numWires() != numWires)
+                throw new IllegalArgumentException("networks of " + network.numWires() + " and " +
+                        numWires + " wires cannot be evaluated together");
+            tops[n] = topWires(network);
+            bottoms[n] = bottomWires(network);
+            unsortedOutputs[n] = new OutputSet(numWires);
+        }
+
+        long[] block = new long[numWires];
+        long[] wires = new long[numWires];
+        for (long b = 0; b < numBlocks(numWires); b++) {
+            loadBlock(block, b);
+            for (int n = 0; n < tops.length; n++) {
+                System.arraycopy(block, 0, wires, 0, numWires);
+                applyComparators(wires, tops[n], bottoms[n]);
+                addUnsorted(wires, unsortedOutputs[n]);
+            }
+        }
+        SearchMetrics.countInputs(counts.length * numBlocks(numWires) * inputsPerBlock(numWires));
+        for (int n = 0; n < counts.length; n++)
+            counts[n] = unsortedOutputs[n].size();
+        return counts;
+    }
+
+    /**
+     * Adds the unsorted outputs held in the lanes of the wire words to an OutputSet.
+     *
+     * @param wires the wire words after the network has run
+     * @param unsortedOutputs the OutputSet that the unsorted outputs are added to
+     */
+    static void addUnsorted(long[] wires, OutputSet unsortedOutputs) {
+        long unsorted = unsortedLanes(wires);
+        while (unsorted != 0) {
+            unsortedOutputs.add(extractPacked(wires, Long.numberOfTrailingZeros(unsorted)));
+            unsorted &= unsorted - 1;
+        }
+    }
+
+    /**
+     * Evaluates a range of blocks and adds their unsorted outputs to the given Set.
+     *
+     * @param numWires the number of wires in the network
+     * @param tops the top wire index of each comparator
+     * @param bottoms the bottom wire index of each comparator
+     * @param fromBlock the first block to evaluate
+     * @param toBlock one past the last block to evaluate
+     * @param unsortedOutputs the Set that the unsorted outputs are added to
+     */
+    static void collectUnsorted(int numWires, int[] tops, int[] bottoms, long fromBlock,
+                                long toBlock, Set<BinarySequence> unsortedOutputs) {
+        long[] wires = new long[numWires];
+        for (long block = fromBlock; block < toBlock; block++) {
+            loadBlock(wires, block);
+            applyComparators(wires, tops, bottoms);
+            long unsorted = unsortedLanes(wires);
+            while (unsorted != 0) {
+                int lane = Long.numberOfTrailingZeros(unsorted);
+                unsortedOutputs.add(extractLane(wires, lane));
+                unsorted &= unsorted - 1;
+            }
+        }
+    }
+
+    /**
+     * @param numWires the number of wires in a comparison network
+     * @return the number of 64-input blocks needed to cover all 2^numWires inputs
+     */
+    static long numBlocks(int numWires) {
+        return numWires > 6 ? 1L << (numWires - 6) : 1;
+    }
+
+    /**
+     * @param numWires the number of wires in a comparison network
+     * @return the number of lanes in a block that hold real inputs
+     */
+    static long inputsPerBlock(int numWires) {
+        return numWires >= 6 ? 64 : 1L << numWires;
+    }
+
+    /**
+     * @param numWires the number of wires in a comparison network
+     * @return a mask of the lanes in a block that hold real inputs
+     */
+    static long laneMask(int numWires) {
+        return numWires >= 6 ? -1L : (1L << (1 << numWires)) - 1;
+    }
+
+    /**
+     * Fills the wire words with the inputs of the given block.
+     *
+     * @param wires the wire words to fill, one per wire
+     * @param block the index of the block of 64 inputs
+     */
+    static void loadBlock(long[] wires, long block) {
+        int numWires = wires.length;
+        for (int w = 0; w < numWires; w++) {
+            int bit = numWires - 1 - w;
+            if (bit < 6)
+                wires[w] = LANE_PATTERNS[bit];
+            else
+                wires[w] = ((block >>> (bit - 6)) & 1) == 0 ? 0 : -1L;
+        }
+    }
+
+    /**
+     * Runs every comparator of a network over the wire words.
+     *
+     * @param wires the wire words, one per wire
+     * @param tops the top wire index of each comparator
+     * @param bottoms the bottom wire index of each comparator
+     */
+    static void applyComparators(long[] wires, int[] tops, int[] bottoms) {
+        applyComparators(wires, tops, bottoms, 0, tops.length);
+    }
+
+    /**
+     * Runs the comparators in [from, to) of a network over the wire words.
+     *
+     * @param wires the wire words, one per wire
+     * @param tops the top wire index of each comparator
+     * @param bottoms the bottom wire index of each comparator
+     * @param from the index of the first comparator to run
+     * @param to one past the index of the last comparator to run
+     */
+    static void applyComparators(long[] wires, int[] tops, int[] bottoms, int from, int to) {
+        for (int i = from; i < to; i++) {
+            long top = wires[tops[i]];
+            long bottom = wires[bottoms[i]];
+            wires[tops[i]] = top & bottom;
+            wires[bottoms[i]] = top | bottom;
+        }
+    }
+
+    /**
+     * Determines which lanes hold an unsorted output. An output is unsorted if some wire holds
+     * a 1 while the wire directly beneath it holds a 0.
+     *
+     * @param wires the wire words, one per wire
+     * @return a word with a bit set for every lane that is unsorted
+     */
+    static long unsortedLanes(long[] wires) {
+        long unsorted = 0;
+        for (int w = 0; w < wires.length - 1; w++)
+            unsorted |= wires[w] & ~wires[w + 1];
+        return unsorted & laneMask(wires.length);
+    }
+
+    /**
+     * Rebuilds the BinarySequence held in one lane of the wire words.
+     *
+     * @param wires the wire words, one per wire
+     * @param lane the lane to extract
+     * @return the BinarySequence in that lane
+     */
+    static BinarySequence extractLane(long[] wires, int lane) {
+        int[] seq = new int[wires.length];
+        for (int w = 0; w < wires.length; w++)
+            seq[w] = (int) ((wires[w] >>> lane) & 1);
+        return new BinarySequence(seq);
+    }
+
+    /**
+     * Packs the output held in one lane of the wire words (see PackedBinarySequence).
+     *
+     * @param wires the wire words, one per wire
+     * @param lane the lane to extract
+     * @return the packed output in that lane
+     */
+    static long extractPacked(long[] wires, int lane) {
+        long output = 0;
+        for (int w = 0; w < wires.length; w++)
+            output = (output << 1) | ((wires[w] >>> lane) & 1);
+        return output;
+    }
+
+    /**
+     * @param network a comparison network
+     * @return the top wire index of every comparator in the network
+     */
+    static int[] topWires(ComparisonNetwork network) {
+        int[] tops = new int[network.size()];
+        for (int i = 0; i < tops.length; i++)
+            tops[i] = network.getNetwork().get(i).getTopWire();
+        return tops;
+    }
+
+    /**
+     * @param network a comparison network
+     * @return the bottom wire index of every comparator in the network
+     */
+    static int[] bottomWires(ComparisonNetwork network) {
+        int[] bottoms = new int[network.size()];
+        for (int i = 0; i < bottoms.length; i++)
+            bottoms[i] = network.getNetwork().get(i).getBottomWire();
+        return bottoms;
+    }
+}
@@ -0,0 +1,69 @@
+package environment;
+
+import java.util.Random;
+
+/**
+ * A Random whose state can be read and restored, so that a search can be checkpointed and
+ * resumed exactly where it stopped.
+ *
+ * It uses the same 48-bit linear congruential generator as java.util.Random, so for the same
+ * seed it produces exactly the same numbers as a plain Random. Unlike Random it is not
+ * thread-safe; give each thread its own. The extra Gaussian that nextGaussian() caches is not
+ * part of the state, so a search that needs exact resumes should not use nextGaussian().
+ */
+public class CheckpointableRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    // the 48-bit state of the generator; set by setSeed, which Random's constructor calls
+    private long state;
+
+    /**
+     * @param seed the seed, as for new Random(seed)
+     */
+    public CheckpointableRandom(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Creates a generator that continues from a saved state.
+     *
+     * @param state a state returned by getState()
+     * @return the generator
+     */
+    public static CheckpointableRandom fromState(long state) {
+        CheckpointableRandom rand = new CheckpointableRandom(0);
+        rand.setState(state);
+        return rand;
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * @return the current 48-bit state of the generator
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * @param state a state returned by getState(), to continue from
+     */
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+}
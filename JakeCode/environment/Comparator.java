@@ -47,6 +47,37 @@ public class Comparator {
         }
     }
 
+    /**
+     * Sorts two binary values in a packed sequence (see PackedBinarySequence), where wire 0 is
+     * the most significant bit. The values are swapped if the top wire holds a 1 and the
+     * bottom wire holds a 0.
+     *
+     * @param packedSequence the packed sequence to sort
+     * @param numWires the number of wires in the packed sequence
+     * @return the packed sequence after this comparator has been applied
+     */
+    public long sort(long packedSequence, int numWires) {
+        long topBit = 1L << (numWires - 1 - topWire);
+        long bottomBit = 1L << (numWires - 1 - bottomWire);
+        if ((packedSequence & topBit) != 0 && (packedSequence & bottomBit) == 0)
+            packedSequence ^= topBit | bottomBit;
+        return packedSequence;
+    }
+
+    /**
+     * @return the top wire index
+     */
+    public int getTopWire() {
+        return topWire;
+    }
+
+    /**
+     * @return the bottom wire index
+     */
+    public int getBottomWire() {
+        return bottomWire;
+    }
+
     /**
      * @return the indices of the top and bottom wires.
      */
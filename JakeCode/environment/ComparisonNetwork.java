@@ -1,8 +1,13 @@
 package environment;
 
+import java.nio.LongBuffer;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.PrimitiveIterator;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A class that represents a comparison network. This class internally represents a comparison
@@ -48,6 +53,45 @@ public class ComparisonNetwork {
         }
     }
 
+    /**
+     * A method that evaluates the network on a given packed input without allocating any
+     * objects. This mirrors the int-encoded run(int) used in the SENSO code.
+     *
+     * @param packedSequence the packed input (see PackedBinarySequence) fed into the network
+     * @return the packed output of the network
+     */
+    public long operateOnOneBinary(long packedSequence) {
+        for (int i = 0; i < network.size(); i++)
+            packedSequence = network.get(i).sort(packedSequence, numWires);
+        return packedSequence;
+    }
+
+    /**
+     * A method that evaluates the network on a given packed input, in place.
+     *
+     * @param packedSequence the input PackedBinarySequence fed into the network
+     */
+    public void operateOnOneBinary(PackedBinarySequence packedSequence) {
+        packedSequence.setValue(operateOnOneBinary(packedSequence.getValue()));
+    }
+
+    /**
+     * A method to evaluate a certain Set of packed sequences. Only the unsorted outputs are
+     * allocated.
+     *
+     * @param packedSequences the Set of packed sequences to evaluate
+     * @return the unsorted outputs from the Set of packed sequences
+     */
+    public Set<PackedBinarySequence> operateOnThesePacked(Set<PackedBinarySequence> packedSequences) {
+        Set<PackedBinarySequence> unsortedOutputs = new HashSet<>();
+        for (PackedBinarySequence seq : packedSequences) {
+            long output = operateOnOneBinary(seq.getValue());
+            if (!PackedBinarySequence.isSorted(output))
+                unsortedOutputs.add(new PackedBinarySequence(numWires, output));
+        }
+        return unsortedOutputs;
+    }
+
     /**
      * A method to evaluate a certain Set of binarySequences.
      *
@@ -91,6 +135,249 @@ public class ComparisonNetwork {
         return unsortedOutputs;
     }
 
+    /**
+     * A method that evaluates the network on all binary inputs up until numWires, 64 inputs at
+     * a time, using bit-sliced wires (see BitSlicedEvaluator).
+     *
+     * This produces exactly the same unsorted outputs as operateOnAllBinary(), but without
+     * creating a BinarySequence for every input.
+     *
+     * @return the unsorted binarySequence outputs produced by this comparison network
+     */
+    public Set<BinarySequence> operateOnAllBinaryBitSliced() {
+        return BitSlicedEvaluator.operateOnAllBinary(this);
+    }
+
+    /**
+     * A method that evaluates the network on all binary inputs up until numWires and returns
+     * the unsorted outputs as a bitmap-backed OutputSet instead of a Set of BinarySequences.
+     *
+     * @return the unsorted outputs produced by this comparison network
+     */
+    public OutputSet unsortedOutputSet() {
+        return BitSlicedEvaluator.unsortedOutputSet(this);
+    }
+
+    /**
+     * A method that evaluates the network on all binary inputs up until numWires, using the
+     * given strategy.
+     *
+     * @param strategy how to evaluate the network
+     * @return the unsorted binarySequence outputs produced by this comparison network
+     */
+    public Set<BinarySequence> operateOnAllBinary(EvaluationStrategy strategy) {
+        switch (strategy) {
+            case OBJECT_PER_INPUT:
+                return operateOnAllBinary();
+            case BIT_SLICED:
+                return operateOnAllBinaryBitSliced();
+            default:
+                return unsortedOutputSet(strategy).toBinarySequences();
+        }
+    }
+
+    /**
+     * A method that evaluates the network on all binary inputs up until numWires, using the
+     * given strategy, and returns the unsorted outputs as an OutputSet.
+     *
+     * @param strategy how to evaluate the network
+     * @return the unsorted outputs produced by this comparison network
+     */
+    public OutputSet unsortedOutputSet(EvaluationStrategy strategy) {
+        switch (strategy) {
+            case OBJECT_PER_INPUT:
+                return new OutputSet(numWires, operateOnAllBinary());
+            case PROPAGATION:
+                return PropagationEvaluator.unsortedOutputSet(this);
+            case COMPILED:
+                if (size() <= NetworkCompiler.MAX_COMPILED_COMPARATORS)
+                    return NetworkCompiler.compile(this).unsortedOutputSet();
+                return unsortedOutputSet();
+            default:
+                return unsortedOutputSet();
+        }
+    }
+
+    /**
+     * A method that counts the unsorted outputs of the network on all binary inputs up until
+     * numWires, but stops as soon as the count reaches the cutoff. This is meant for local
+     * search, where a mutant is only kept if it is better than its parent: with the parent's
+     * fitness as the cutoff, most worse mutants are rejected after evaluating only part of the
+     * inputs.
+     *
+     * @param cutoff the count at which to stop evaluating
+     * @return the number of unsorted outputs, or cutoff if there are at least that many
+     */
+    public int countUnsorted(int cutoff) {
+        return BitSlicedEvaluator.countUnsorted(this, cutoff);
+    }
+
+    /**
+     * A method that counts the unsorted outputs of several networks with the same number of
+     * wires on all binary inputs, as a batch. Each block of inputs is generated once and run
+     * through every network, which is faster than evaluating the networks one by one when a
+     * search scores a whole population at a time.
+     *
+     * @param networks the networks to evaluate, all on the same number of wires
+     * @return the number of unsorted outputs of each network, in order
+     */
+    public static int[] countUnsorted(List<ComparisonNetwork> networks) {
+        return BitSlicedEvaluator.countUnsorted(networks);
+    }
+
+    /**
+     * A method to evaluate the inputs streamed from an InputSource, without materializing any
+     * of them.
+     *
+     * @param inputs the source of packed inputs to evaluate
+     * @return the unsorted outputs from the given inputs
+     */
+    public OutputSet unsortedOutputSet(InputSource inputs) {
+        return unsortedOutputSet(inputs, false);
+    }
+
+    /**
+     * A method to evaluate the inputs streamed from an InputSource, optionally in parallel.
+     * In parallel, every split of the source collects into its own OutputSet and the sets are
+     * merged, so this is meant for networks on up to about 24 wires.
+     *
+     * @param inputs the source of packed inputs to evaluate
+     * @param parallel whether to split the inputs across the common ForkJoinPool
+     * @return the unsorted outputs from the given inputs
+     */
+    public OutputSet unsortedOutputSet(InputSource inputs, boolean parallel) {
+        return inputs.stream(parallel).collect(() -> new OutputSet(numWires),
+                (unsortedOutputs, input) -> {
+                    long output = operateOnOneBinary(input);
+                    if (!PackedBinarySequence.isSorted(output))
+                        unsortedOutputs.add(output);
+                }, OutputSet::addAll);
+    }
+
+    /**
+     * A method that counts the unsorted outputs of the inputs streamed from an InputSource,
+     * but stops as soon as the count reaches the cutoff.
+     *
+     * @param inputs the source of packed inputs to evaluate
+     * @param cutoff the count at which to stop evaluating
+     * @return the number of unsorted outputs, or cutoff if there are at least that many
+     */
+    public int countUnsorted(InputSource inputs, int cutoff) {
+        OutputSet unsortedOutputs = new OutputSet(numWires);
+        Spliterator.OfLong it = inputs.spliterator();
+        boolean more = true;
+        while (more && unsortedOutputs.size() < cutoff) {
+            more = it.tryAdvance((long input) -> {
+                long output = operateOnOneBinary(input);
+                if (!PackedBinarySequence.isSorted(output))
+                    unsortedOutputs.add(output);
+            });
+        }
+        return Math.min(unsortedOutputs.size(), cutoff);
+    }
+
+    /**
+     * A method that counts the unsorted outputs of a certain OutputSet of packed inputs, but
+     * stops as soon as the count reaches the cutoff.
+     *
+     * @param inputs the packed inputs to evaluate
+     * @param cutoff the count at which to stop evaluating
+     * @return the number of unsorted outputs, or cutoff if there are at least that many
+     */
+    public int countUnsorted(OutputSet inputs, int cutoff) {
+        OutputSet unsortedOutputs = new OutputSet(numWires);
+        PrimitiveIterator.OfLong it = inputs.iterator();
+        while (it.hasNext() && unsortedOutputs.size() < cutoff) {
+            long output = operateOnOneBinary(it.nextLong());
+            if (!PackedBinarySequence.isSorted(output))
+                unsortedOutputs.add(output);
+        }
+        return Math.min(unsortedOutputs.size(), cutoff);
+    }
+
+    /**
+     * A method to evaluate a certain OutputSet of packed inputs, such as the unsorted outputs of
+     * another network.
+     *
+     * @param inputs the packed inputs to evaluate
+     * @return the unsorted outputs from the given inputs
+     */
+    public OutputSet unsortedOutputSet(OutputSet inputs) {
+        OutputSet unsortedOutputs = new OutputSet(numWires);
+        PrimitiveIterator.OfLong it = inputs.iterator();
+        while (it.hasNext()) {
+            long output = operateOnOneBinary(it.nextLong());
+            if (!PackedBinarySequence.isSorted(output))
+                unsortedOutputs.add(output);
+        }
+        return unsortedOutputs;
+    }
+
+    /**
+     * A method to evaluate packed inputs streamed from a buffer, such as an output set mapped
+     * from an OutputSetStore. The buffer's position is not changed.
+     *
+     * @param inputs the packed inputs to evaluate
+     * @return the unsorted outputs from the given inputs
+     */
+    public OutputSet unsortedOutputSet(LongBuffer inputs) {
+        OutputSet unsortedOutputs = new OutputSet(numWires);
+        for (int i = inputs.position(); i < inputs.limit(); i++) {
+            long output = operateOnOneBinary(inputs.get(i));
+            if (!PackedBinarySequence.isSorted(output))
+                unsortedOutputs.add(output);
+        }
+        return unsortedOutputs;
+    }
+
+    /**
+     * A method that counts the unsorted outputs of packed inputs streamed from a buffer, but
+     * stops as soon as the count reaches the cutoff. The buffer's position is not changed.
+     *
+     * @param inputs the packed inputs to evaluate
+     * @param cutoff the count at which to stop evaluating
+     * @return the number of unsorted outputs, or cutoff if there are at least that many
+     */
+    public int countUnsorted(LongBuffer inputs, int cutoff) {
+        OutputSet unsortedOutputs = new OutputSet(numWires);
+        for (int i = inputs.position(); i < inputs.limit() && unsortedOutputs.size() < cutoff; i++) {
+            long output = operateOnOneBinary(inputs.get(i));
+            if (!PackedBinarySequence.isSorted(output))
+                unsortedOutputs.add(output);
+        }
+        return Math.min(unsortedOutputs.size(), cutoff);
+    }
+
+    /**
+     * A method that evaluates the network on all binary inputs up until numWires, splitting the
+     * inputs across the threads of the given pool (see ParallelEvaluator).
+     *
+     * This produces exactly the same unsorted outputs as operateOnAllBinary(). Reuse one pool
+     * across calls when evaluating many networks.
+     *
+     * @param pool the ForkJoinPool to run the evaluation on
+     * @return the unsorted binarySequence outputs produced by this comparison network
+     */
+    public Set<BinarySequence> operateOnAllBinaryParallel(ForkJoinPool pool) {
+        return ParallelEvaluator.operateOnAllBinary(this, pool);
+    }
+
+    /**
+     * A method that evaluates the network on all binary inputs up until numWires using a new
+     * ForkJoinPool with the given number of threads.
+     *
+     * @param parallelism the number of threads to evaluate with
+     * @return the unsorted binarySequence outputs produced by this comparison network
+     */
+    public Set<BinarySequence> operateOnAllBinaryParallel(int parallelism) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return operateOnAllBinaryParallel(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     /**
      * Adds a comparator to this sorting network.
      *
@@ -145,6 +432,31 @@ public class ComparisonNetwork {
         network.set(index, c);
     }
 
+    /**
+     * @return the number of layers this network needs when independent comparators run at the
+     * same time (see LayeredNetwork)
+     */
+    public int depth() {
+        return LayeredNetwork.of(this).depth();
+    }
+
+    /**
+     * Computes a 64-bit fingerprint of this network from its number of wires and its
+     * comparators, in order. Two networks with the same comparators in the same order always
+     * have the same fingerprint.
+     *
+     * @return the FNV-1a hash of this network
+     */
+    public long fingerprint() {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ numWires) * 0x100000001b3L;
+        for (int i = 0; i < network.size(); i++) {
+            hash = (hash ^ network.get(i).getTopWire()) * 0x100000001b3L;
+            hash = (hash ^ network.get(i).getBottomWire()) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
     /**
      * Overrides the toString() method to print out an accurate String representation of the
      * sorting network.
@@ -153,11 +465,9 @@ public class ComparisonNetwork {
      */
     @Override
     public String toString() {
-        String str = "";
-        for (int i = 0; i < network.size(); i++) {
-            str += network.get(i).toString();
-            str += "\n";
-        }
-        return str;
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < network.size(); i++)
+            str.append(network.get(i)).append('\n');
+        return str.toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package environment;
+
+/**
+ * A comparison network ready to be evaluated, as returned by NetworkCompiler: either a
+ * generated class with every comparator unrolled into straight-line code, or (for networks
+ * that have not been evaluated often enough to be worth compiling) an interpreter over the
+ * network's wire indices. Both give exactly the same results as the ComparisonNetwork.
+ */
+public interface CompiledNetwork {
+
+    /**
+     * @return the number of wires the network contains
+     */
+    int numWires();
+
+    /**
+     * Evaluates the network on a packed input (see PackedBinarySequence).
+     *
+     * @param packedSequence the packed input fed into the network
+     * @return the packed output of the network
+     */
+    long operateOnOneBinary(long packedSequence);
+
+    /**
+     * Runs every comparator of the network over bit-sliced wire words (see BitSlicedEvaluator),
+     * in place.
+     *
+     * @param wires the wire words, one per wire
+     */
+    void applyComparators(long[] wires);
+
+    /**
+     * Evaluates the network on every binary input, 64 inputs at a time.
+     *
+     * @return the unsorted outputs produced by the network
+     */
+    default OutputSet unsortedOutputSet() {
+        long[] wires = new long[numWires()];
+        OutputSet unsortedOutputs = new OutputSet(numWires());
+        for (long block = 0; block < BitSlicedEvaluator.numBlocks(numWires()); block++) {
+            BitSlicedEvaluator.loadBlock(wires, block);
+            applyComparators(wires);
+            BitSlicedEvaluator.addUnsorted(wires, unsortedOutputs);
+        }
+        SearchMetrics.countInputs(BitSlicedEvaluator.numBlocks(numWires())
+                * BitSlicedEvaluator.inputsPerBlock(numWires()));
+        return unsortedOutputs;
+    }
+
+    /**
+     * Counts the unsorted outputs of the network on every binary input, stopping as soon as the
+     * count reaches the cutoff.
+     *
+     * @param cutoff the count at which to stop evaluating
+     * @return the number of unsorted outputs, or cutoff if there are at least that many
+     */
+    default int countUnsorted(int cutoff) {
+        long[] wires = new long[numWires()];
+        OutputSet unsortedOutputs = new OutputSet(numWires());
+        long numBlocks = BitSlicedEvaluator.numBlocks(numWires());
+        long block = 0;
+        for (; block < numBlocks && unsortedOutputs.size() < cutoff; block++) {
+            BitSlicedEvaluator.loadBlock(wires, block);
+            applyComparators(wires);
+            BitSlicedEvaluator.addUnsorted(wires, unsortedOutputs);
+        }
+        SearchMetrics.countInputs(block * BitSlicedEvaluator.inputsPerBlock(numWires()));
+        return Math.min(unsortedOutputs.size(), cutoff);
+    }
+}
@@ -0,0 +1,121 @@
+package environment;
+
+import java.util.function.IntFunction;
+
+/**
+ * The temperature of one simulated annealing run as it cools, one step per proposed move.
+ *
+ * A schedule may keep state (the adaptive schedule follows the acceptance rate), so
+ * SimulatedAnnealingEngine creates a fresh one for every restart from an IntFunction that is
+ * given the number of steps of the run. The factories below return such functions.
+ */
+public interface CoolingSchedule {
+
+    /**
+     * @return the temperature of the current step
+     */
+    double temperature();
+
+    /**
+     * Moves on to the next step.
+     *
+     * @param accepted whether the move proposed at the current step was kept
+     */
+    void step(boolean accepted);
+
+    /**
+     * A schedule that multiplies the temperature by the same factor every step, going from start
+     * to end over the run.
+     *
+     * @param start the temperature of the first step
+     * @param end the temperature of the last step, above 0
+     * @return a function creating the schedule of a run with the given number of steps
+     */
+    static IntFunction<CoolingSchedule> geometric(double start, double end) {
+        if (start <= 0 || end <= 0)
+            throw new IllegalArgumentException("geometric temperatures must be positive");
+        return numSteps -> new CoolingSchedule() {
+            private final double factor = Math.pow(end / start, 1.0 / Math.max(1, numSteps - 1));
+            private double temperature = start;
+
+            @Override
+            public double temperature() {
+                return temperature;
+            }
+
+            @Override
+            public void step(boolean accepted) {
+                temperature *= factor;
+            }
+        };
+    }
+
+    /**
+     * A schedule that lowers the temperature by the same amount every step, going from start to
+     * end over the run.
+     *
+     * @param start the temperature of the first step
+     * @param end the temperature of the last step
+     * @return a function creating the schedule of a run with the given number of steps
+     */
+    static IntFunction<CoolingSchedule> linear(double start, double end) {
+        return numSteps -> new CoolingSchedule() {
+            private final double decrement = (start - end) / Math.max(1, numSteps - 1);
+            private double temperature = start;
+
+            @Override
+            public double temperature() {
+                return temperature;
+            }
+
+            @Override
+            public void step(boolean accepted) {
+                temperature = Math.max(end, temperature - decrement);
+            }
+        };
+    }
+
+    /**
+     * A schedule that steers the temperature by the acceptance rate. The target rate falls
+     * linearly from targetAcceptance to 0 over the run; after every window of steps the
+     * temperature is divided by factor if fewer moves than the target were kept, and multiplied
+     * by it otherwise. This adapts to how rugged the landscape is, where a fixed schedule has
+     * to be tuned per number of wires.
+     *
+     * @param start the temperature of the first step
+     * @param targetAcceptance the fraction of moves to keep at the start of the run
+     * @param window the number of steps between adjustments
+     * @param factor the factor, below 1, the temperature is adjusted by
+     * @return a function creating the schedule of a run with the given number of steps
+     */
+    static IntFunction<CoolingSchedule> adaptive(double start, double targetAcceptance, int window,
+                                                 double factor) {
+        if (factor <= 0 || factor >= 1)
+            throw new IllegalArgumentException("factor must be between 0 and 1, not " + factor);
+        return numSteps -> new CoolingSchedule() {
+            private double temperature = start;
+            private int step;
+            private int acceptedInWindow;
+
+            @Override
+            public double temperature() {
+                return temperature;
+            }
+
+            @Override
+            public void step(boolean accepted) {
+                step++;
+                if (accepted)
+                    acceptedInWindow++;
+                if (step % window == 0) {
+                    double target = targetAcceptance * (1 - (double) step / numSteps);
+                    if (acceptedInWindow > target * window)
+                        temperature *= factor;
+                    else
+                        temperature /= factor;
+                    acceptedInWindow = 0;
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package environment;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for one fitness evaluation made through SearchMetrics. The event's
+ * duration is the time the evaluation took. It is disabled unless a recording enables it,
+ * e.g. with -XX:StartFlightRecording:settings=profile.
+ */
+@Name("environment.Evaluation")
+@Label("Fitness Evaluation")
+@Category("Sorting Networks")
+@Description("A fitness evaluation of a comparison network")
+@StackTrace(false)
+public final class EvaluationEvent extends jdk.jfr.Event {
+
+    @Label("Fitness")
+    int fitness;
+
+    @Label("Cutoff")
+    @Description("The fitness at which evaluation could stop, or Integer.MAX_VALUE")
+    int cutoff;
+
+    @Label("Allocated Bytes")
+    long allocatedBytes;
+}
@@ -0,0 +1,35 @@
+package environment;
+
+/**
+ * The ways a ComparisonNetwork can be evaluated on all binary inputs. Every strategy produces
+ * exactly the same unsorted outputs; they only differ in speed.
+ */
+public enum EvaluationStrategy {
+
+    /**
+     * Runs a new BinarySequence through the network for every input (the original method).
+     */
+    OBJECT_PER_INPUT,
+
+    /**
+     * Runs 64 inputs at a time through the network, one bit per input in every wire word
+     * (see BitSlicedEvaluator).
+     */
+    BIT_SLICED,
+
+    /**
+     * Propagates the set of distinct unsorted states through the network, deduplicating after
+     * every comparator (see PropagationEvaluator). Its work shrinks as states merge, so it
+     * suits networks that sort well; on random networks BIT_SLICED is usually faster.
+     */
+    PROPAGATION,
+
+    /**
+     * Compiles the network into straight-line code (see NetworkCompiler) and runs it 64 inputs
+     * at a time. Compiling costs far more than one evaluation, so this only pays off for a
+     * network evaluated many times; searches use NetworkCompiler.fitness() instead, which only
+     * compiles the networks they keep asking for. Networks too large to compile are evaluated
+     * as BIT_SLICED.
+     */
+    COMPILED
+}
@@ -0,0 +1,191 @@
+package environment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * A bounded cache of network fitnesses, keyed by NetworkFingerprint so that networks which only
+ * differ in the order of independent comparators (or by a no-op comparator) share one entry.
+ * Hill climbing and annealing often produce such mutants, e.g. when a comparator is replaced by
+ * one on the same wires.
+ *
+ * Once the cache is full the least recently used entry is evicted. The cache is thread-safe, so
+ * parallel search workers can share one. Fitnesses are computed outside the lock, so two workers
+ * that miss on the same network at the same time may both compute it.
+ *
+ * Only exact fitnesses are stored. A bounded evaluation that reaches its cutoff has not found the
+ * real fitness, so it is returned but not cached.
+ */
+public class FitnessCache {
+
+    private final int capacity;
+
+    // guarded by itself; in access order, so the eldest entry is the least recently used
+    private final Map<NetworkFingerprint, Integer> fitnesses;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity the largest number of fitnesses to keep
+     */
+    public FitnessCache(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive, not " + capacity);
+        this.capacity = capacity;
+        this.fitnesses = new LinkedHashMap<NetworkFingerprint, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<NetworkFingerprint, Integer> eldest) {
+                if (size() <= FitnessCache.this.capacity)
+                    return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Looks up the fitness of a network, computing and caching it on a miss.
+     *
+     * @param network the network to score
+     * @param fitness computes the exact fitness of a network
+     * @return the fitness of the network
+     */
+    public int getOrCompute(ComparisonNetwork network, ToIntFunction<ComparisonNetwork> fitness) {
+        NetworkFingerprint key = NetworkFingerprint.of(network);
+        Integer cached = lookup(key);
+        if (cached != null)
+            return cached;
+
+        int value = fitness.applyAsInt(network);
+        store(key, value);
+        return value;
+    }
+
+    /**
+     * Looks up the fitness of a network, computing it with a cutoff on a miss. The result is
+     * cached only if it is below the cutoff, since only then is it exact. A cached fitness that
+     * is at least the cutoff is returned as the cutoff, so the result does not depend on whether
+     * another worker happened to cache the network first.
+     *
+     * @param network the network to score
+     * @param cutoff the fitness at which evaluation may stop
+     * @param fitness computes the fitness of a network up to a cutoff
+     * @return the fitness of the network, or a value of at least cutoff if it is at least cutoff
+     */
+    public int getOrCompute(ComparisonNetwork network, int cutoff,
+                            HillClimbingEngine.BoundedFitness<ComparisonNetwork> fitness) {
+        NetworkFingerprint key = NetworkFingerprint.of(network);
+        Integer cached = lookup(key);
+        if (cached != null)
+            return Math.min(cached, cutoff);
+
+        int value = fitness.evaluate(network, cutoff);
+        if (value < cutoff)
+            store(key, value);
+        return value;
+    }
+
+    /**
+     * @param fitness computes the fitness of a network up to a cutoff
+     * @return the same fitness function, answered from this cache where possible
+     */
+    public HillClimbingEngine.BoundedFitness<ComparisonNetwork> wrap(
+            HillClimbingEngine.BoundedFitness<ComparisonNetwork> fitness) {
+        return (network, cutoff) -> getOrCompute(network, cutoff, fitness);
+    }
+
+    /**
+     * @return the number of lookups that found a cached fitness
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that had to compute the fitness
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of entries evicted to stay within capacity
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the fraction of lookups that found a cached fitness, or 0 if there were none
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * @return the number of fitnesses currently cached
+     */
+    public int size() {
+        synchronized (fitnesses) {
+            return fitnesses.size();
+        }
+    }
+
+    /**
+     * @return the largest number of fitnesses this cache keeps
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Removes every cached fitness. The hit and miss counts are kept.
+     */
+    public void clear() {
+        synchronized (fitnesses) {
+            fitnesses.clear();
+        }
+    }
+
+    /**
+     * @param key the fingerprint to look up
+     * @return the cached fitness, or null on a miss
+     */
+    private Integer lookup(NetworkFingerprint key) {
+        Integer cached;
+        synchronized (fitnesses) {
+            cached = fitnesses.get(key);
+        }
+        if (cached != null)
+            hits.increment();
+        else
+            misses.increment();
+        return cached;
+    }
+
+    /**
+     * @param key the fingerprint to cache under
+     * @param fitness the exact fitness of the network
+     */
+    private void store(NetworkFingerprint key, int fitness) {
+        synchronized (fitnesses) {
+            fitnesses.put(key, fitness);
+        }
+    }
+
+    /**
+     * @return a summary of the cache's size and hit rate
+     */
+    @Override
+    public String toString() {
+        return String.format("FitnessCache[size=%d/%d, hits=%d, misses=%d, evictions=%d, " +
+                "hit rate=%.3f]", size(), capacity, getHits(), getMisses(), getEvictions(),
+                getHitRate());
+    }
+}
@@ -0,0 +1,268 @@
+package environment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The checkpoint file of a HillClimbingEngine run.
+ *
+ * Search threads publish a snapshot of their restart's state every so often; publishing only
+ * swaps a reference, so it never waits on the disk. A single background thread writes the
+ * latest snapshot of every restart to the file at a fixed interval, and once more when the run
+ * ends. The file is written to a temporary file and atomically moved into place, so a crash
+ * while writing leaves the previous checkpoint intact.
+ *
+ * The file holds a header (magic, version, K, M and the master seed) followed by, for each
+ * restart, whether it has a snapshot and then the snapshot itself. Once a run completes its
+ * checkpoint is deleted, so that running again starts a new run instead of returning the
+ * finished one.
+ *
+ * @param <N> the type of network being searched
+ */
+final class HillClimbingCheckpoint<N> {
+
+    // "SNHC", for sorting network hill climbing
+    private static final int MAGIC = 0x534E4843;
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final NetworkCodec<N> codec;
+    private final int numRestarts;
+    private final int numMutations;
+    private final long seed;
+
+    // the latest snapshot published by each restart
+    private final AtomicReferenceArray<RestartState> states;
+
+    private ScheduledExecutorService writer;
+
+    HillClimbingCheckpoint(Path file, NetworkCodec<N> codec, int numRestarts, int numMutations,
+                           long seed) {
+        this.file = file;
+        this.codec = codec;
+        this.numRestarts = numRestarts;
+        this.numMutations = numMutations;
+        this.seed = seed;
+        this.states = new AtomicReferenceArray<>(numRestarts);
+    }
+
+    /**
+     * Reads the checkpoint of an earlier run with the same number of restarts and mutations.
+     *
+     * @param file the checkpoint file
+     * @param codec reads the networks
+     * @param numRestarts the number of restarts (K) of this run
+     * @param numMutations the number of mutations per restart (M) of this run
+     * @return the checkpoint, or null if there is no file or it is for a different K or M
+     * @throws IOException if the file cannot be read or is not a hill climbing checkpoint of
+     * this version
+     */
+    static <N> HillClimbingCheckpoint<N> load(Path file, NetworkCodec<N> codec, int numRestarts,
+                                              int numMutations) throws IOException {
+        if (!Files.exists(file))
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + " is not a hill climbing checkpoint");
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException(file + " has unsupported checkpoint version " + version);
+            if (in.readInt() != numRestarts || in.readInt() != numMutations)
+                return null;
+
+            HillClimbingCheckpoint<N> checkpoint =
+                    new HillClimbingCheckpoint<>(file, codec, numRestarts, numMutations, in.readLong());
+            for (int k = 0; k < numRestarts; k++) {
+                if (in.readBoolean()) {
+                    RestartState state = new RestartState(k, in.readInt(), in.readInt(), in.readInt(),
+                            in.readLong(), in.readInt(), in.readLong(), in.readLong(),
+                            new byte[in.readInt()]);
+                    in.readFully(state.network);
+                    checkpoint.states.set(k, state);
+                }
+            }
+            return checkpoint;
+        }
+    }
+
+    /**
+     * @return the master seed of the run
+     */
+    long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param restart the index of a restart
+     * @return the latest snapshot of the restart, or null if it has none
+     */
+    RestartState getState(int restart) {
+        return states.get(restart);
+    }
+
+    /**
+     * @param state the restart's network, as stored in a snapshot
+     * @return the network
+     */
+    N decode(RestartState state) {
+        try {
+            return codec.read(new DataInputStream(new ByteArrayInputStream(state.network)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Publishes a snapshot of a restart. Called by the restart's own thread, which must not be
+     * holding on to the network's state anywhere else, since the network is encoded now.
+     */
+    void publish(int restart, int mutations, int initialFitness, int bestFitness, long fitnessSum,
+                 int accepted, long bestEvaluation, long randomState, N network) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            codec.write(new DataOutputStream(bytes), network);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        states.set(restart, new RestartState(restart, mutations, initialFitness, bestFitness,
+                fitnessSum, accepted, bestEvaluation, randomState, bytes.toByteArray()));
+    }
+
+    /**
+     * Starts writing the checkpoint in the background every interval.
+     *
+     * @param intervalMillis the time between writes
+     */
+    void start(long intervalMillis) {
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "hill-climbing-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(() -> {
+            try {
+                write();
+            } catch (IOException e) {
+                System.err.println("Could not write checkpoint " + file + ": " + e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background writes and writes the checkpoint one last time, so that an
+     * unfinished run can be resumed from it.
+     *
+     * @throws IOException if the last write fails
+     */
+    void close() throws IOException {
+        stop();
+        write();
+    }
+
+    /**
+     * Stops the background writes and deletes the checkpoint file, once the run has completed.
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    void delete() throws IOException {
+        stop();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Stops the background writes, waiting for one in progress to finish.
+     */
+    private void stop() {
+        if (writer != null) {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Writes the latest snapshot of every restart to the checkpoint file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    synchronized void write() throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        boolean moved = false;
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(numRestarts);
+                out.writeInt(numMutations);
+                out.writeLong(seed);
+                for (int k = 0; k < numRestarts; k++) {
+                    RestartState state = states.get(k);
+                    out.writeBoolean(state != null);
+                    if (state != null) {
+                        out.writeInt(state.mutations);
+                        out.writeInt(state.initialFitness);
+                        out.writeInt(state.bestFitness);
+                        out.writeLong(state.fitnessSum);
+                        out.writeInt(state.accepted);
+                        out.writeLong(state.bestEvaluation);
+                        out.writeLong(state.randomState);
+                        out.writeInt(state.network.length);
+                        out.write(state.network);
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            moved = true;
+        } finally {
+            if (!moved)
+                Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * An immutable snapshot of one restart after a number of its mutations.
+     */
+    static final class RestartState {
+        final int restart;
+        final int mutations;
+        final int initialFitness;
+        final int bestFitness;
+        final long fitnessSum;
+        final int accepted;
+        final long bestEvaluation;
+        final long randomState;
+        final byte[] network;
+
+        RestartState(int restart, int mutations, int initialFitness, int bestFitness,
+                     long fitnessSum, int accepted, long bestEvaluation, long randomState,
+                     byte[] network) {
+            this.restart = restart;
+            this.mutations = mutations;
+            this.initialFitness = initialFitness;
+            this.bestFitness = bestFitness;
+            this.fitnessSum = fitnessSum;
+            this.accepted = accepted;
+            this.bestEvaluation = bestEvaluation;
+            this.randomState = randomState;
+            this.network = network;
+        }
+    }
+}
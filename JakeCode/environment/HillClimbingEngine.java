@@ -0,0 +1,437 @@
+package environment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * A multi-start hill climbing engine that runs its K restarts in parallel.
+ *
+ * Each restart builds a starting network, then mutates the best network it has seen M times,
+ * keeping a mutant only if its fitness is strictly lower. The restarts are independent, so each
+ * one runs as its own task with its own Random, seeded from a single master seed. A run with the
+ * same seed therefore gives the same results no matter how many threads are used.
+ *
+ * The engine is generic in the network type so that it only depends on how a network is
+ * created, mutated and scored. For this package that is NetworkUtilities.createRandomNetwork,
+ * NetworkUtilities.copyMutate and the size of the unsorted output set. The mutator must not
+ * change its argument: the best network is kept by reference, so a mutator that changes it in
+ * place (as NetworkUtilities.hillClimbMutate does, through the shared comparator list) leaves
+ * a best network that no longer has the best fitness. IncrementalFitness provides a mutator and
+ * fitness function that score each mutant from its parent instead of from scratch.
+ *
+ * A run can also be checkpointed to a file (see HillClimbingCheckpoint) and resumed from it
+ * after being stopped. Each restart's Random is a CheckpointableRandom, which produces the same
+ * numbers as a Random with the same seed, so a resumed run gives exactly the same results as
+ * one that was never stopped, provided the fitness function is deterministic.
+ *
+ * @param <N> the type of network being searched
+ */
+public class HillClimbingEngine<N> {
+
+    // the number of mutations between the snapshots a restart publishes to its checkpoint
+    private static final int SNAPSHOT_INTERVAL = 256;
+
+    // creates the starting network of a restart
+    private final Function<Random, N> initializer;
+
+    // creates a mutant of a network, without changing it
+    private final BiFunction<N, Random, N> mutator;
+
+    // scores a network, lower is better
+    private final BoundedFitness<N> fitness;
+
+    // the number of threads restarts run on
+    private final int numThreads;
+
+    // records evaluations and moves, or null
+    private SearchMetrics metrics;
+
+    /**
+     * @param initializer creates the starting network of a restart
+     * @param mutator creates a mutant of a network, without changing it
+     * @param fitness scores a network, lower is better
+     * @param numThreads the number of threads restarts run on
+     */
+    public HillClimbingEngine(Function<Random, N> initializer, BiFunction<N, Random, N> mutator,
+                              ToIntFunction<N> fitness, int numThreads) {
+        this(initializer, mutator, (network, cutoff) -> fitness.applyAsInt(network), numThreads);
+    }
+
+    /**
+     * Creates an engine whose fitness evaluations may stop early. Each mutant is scored with
+     * its parent's fitness as the cutoff, so a mutant that cannot be kept is rejected as soon
+     * as it is known to be no better. The sum of fitnesses (and so the average fitness) then
+     * only counts rejected mutants up to the cutoff, making it a lower bound.
+     *
+     * @param initializer creates the starting network of a restart
+     * @param mutator creates a mutant of a network, without changing it
+     * @param fitness scores a network, lower is better, stopping at a cutoff
+     * @param numThreads the number of threads restarts run on
+     */
+    public HillClimbingEngine(Function<Random, N> initializer, BiFunction<N, Random, N> mutator,
+                              BoundedFitness<N> fitness, int numThreads) {
+        this.initializer = initializer;
+        this.mutator = mutator;
+        this.fitness = fitness;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Creates an engine that uses one thread per available processor.
+     *
+     * @param initializer creates the starting network of a restart
+     * @param mutator creates a mutant of a network, without changing it
+     * @param fitness scores a network, lower is better
+     */
+    public HillClimbingEngine(Function<Random, N> initializer, BiFunction<N, Random, N> mutator,
+                              ToIntFunction<N> fitness) {
+        this(initializer, mutator, fitness, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an engine whose fitness evaluations may stop early, using one thread per
+     * available processor.
+     *
+     * @param initializer creates the starting network of a restart
+     * @param mutator creates a mutant of a network, without changing it
+     * @param fitness scores a network, lower is better, stopping at a cutoff
+     */
+    public HillClimbingEngine(Function<Random, N> initializer, BiFunction<N, Random, N> mutator,
+                              BoundedFitness<N> fitness) {
+        this(initializer, mutator, fitness, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Records every evaluation and every kept or rejected mutation of later runs.
+     *
+     * @param metrics the metrics to record into, or null to stop recording
+     */
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Runs K independent hill climbs of M mutations each.
+     *
+     * @param numRestarts the number of restarts (K)
+     * @param numMutations the number of mutations per restart (M)
+     * @param seed the master seed that every restart's Random is derived from
+     * @return the results of every restart and the best network overall
+     */
+    public Result<N> run(int numRestarts, int numMutations, long seed) {
+        return run(numRestarts, numMutations, seed, null);
+    }
+
+    /**
+     * Performs a single restart on the calling thread, so that callers with their own scheduling
+     * can run restarts as separate tasks. Restart k of run(K, M, seed) uses the seed returned by
+     * the (k+1)th call to nextLong() of a Random seeded with seed, so running every restart this
+     * way with those seeds gives exactly the results of run().
+     *
+     * @param restart the index of the restart
+     * @param numMutations the number of mutations (M)
+     * @param restartSeed the seed of the restart's Random
+     * @return the result of the restart
+     */
+    public RestartResult<N> runRestart(int restart, int numMutations, long restartSeed) {
+        return climb(restart, numMutations, restartSeed, null);
+    }
+
+    /**
+     * Runs K independent hill climbs of M mutations each, checkpointing them to a file. If the
+     * file holds a checkpoint of a run with the same K and M, that run is resumed with its own
+     * seed, and the given seed is ignored. Otherwise a new run is started. Checkpoints are
+     * written by a background thread every interval, so the restarts never wait on the disk.
+     * If the run fails, the checkpoint is written once more and kept so that it can be resumed;
+     * once the run completes, the file is deleted.
+     *
+     * @param numRestarts the number of restarts (K)
+     * @param numMutations the number of mutations per restart (M)
+     * @param seed the master seed that every restart's Random is derived from
+     * @param checkpointFile the file to resume from and checkpoint to
+     * @param codec writes and reads the networks in the checkpoint
+     * @param intervalMillis the time between checkpoints, in milliseconds
+     * @return the results of every restart and the best network overall
+     * @throws IOException if the checkpoint cannot be read, or cannot be written or deleted at
+     * the end
+     */
+    public Result<N> run(int numRestarts, int numMutations, long seed, Path checkpointFile,
+                         NetworkCodec<N> codec, long intervalMillis) throws IOException {
+        HillClimbingCheckpoint<N> checkpoint =
+                HillClimbingCheckpoint.load(checkpointFile, codec, numRestarts, numMutations);
+        if (checkpoint == null)
+            checkpoint = new HillClimbingCheckpoint<>(checkpointFile, codec, numRestarts,
+                    numMutations, seed);
+
+        checkpoint.start(intervalMillis);
+        boolean completed = false;
+        try {
+            Result<N> result = run(numRestarts, numMutations, checkpoint.getSeed(), checkpoint);
+            completed = true;
+            return result;
+        } finally {
+            if (completed)
+                checkpoint.delete();
+            else
+                checkpoint.close();
+        }
+    }
+
+    /**
+     * Runs K independent hill climbs of M mutations each, resuming from and publishing to the
+     * checkpoint if there is one.
+     */
+    private Result<N> run(int numRestarts, int numMutations, long seed,
+                          HillClimbingCheckpoint<N> checkpoint) {
+        Random seeds = new Random(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, numRestarts));
+        try {
+            List<Future<RestartResult<N>>> futures = new ArrayList<>();
+            for (int k = 0; k < numRestarts; k++) {
+                final int restart = k;
+                final long restartSeed = seeds.nextLong();
+                futures.add(executor.submit(() -> climb(restart, numMutations, restartSeed, checkpoint)));
+            }
+
+            List<RestartResult<N>> restarts = new ArrayList<>();
+            for (Future<RestartResult<N>> future : futures)
+                restarts.add(future.get());
+            return new Result<>(restarts);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("hill climbing was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("a hill climbing restart failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Performs a single hill climb, continuing from the restart's last snapshot if the
+     * checkpoint has one.
+     *
+     * @param restart the index of this restart
+     * @param numMutations the number of mutations to try
+     * @param restartSeed the seed of the Random used by this restart only
+     * @param checkpoint the checkpoint to resume from and publish to, or null
+     * @return the result of this restart
+     */
+    private RestartResult<N> climb(int restart, int numMutations, long restartSeed,
+                                   HillClimbingCheckpoint<N> checkpoint) {
+        HillClimbingCheckpoint.RestartState state =
+                checkpoint == null ? null : checkpoint.getState(restart);
+        SearchMetrics metrics = this.metrics;
+        BoundedFitness<N> fitness = metrics == null ? this.fitness : metrics.wrap(this.fitness);
+
+        CheckpointableRandom rand;
+        N bestNetwork;
+        int bestFitness;
+        int initialFitness;
+        long fitnessSum;
+        int accepted;
+        long bestEvaluation;
+        int firstMutation;
+        if (state != null) {
+            rand = CheckpointableRandom.fromState(state.randomState);
+            bestNetwork = checkpoint.decode(state);
+            bestFitness = state.bestFitness;
+            initialFitness = state.initialFitness;
+            fitnessSum = state.fitnessSum;
+            accepted = state.accepted;
+            bestEvaluation = state.bestEvaluation;
+            firstMutation = state.mutations;
+        } else {
+            rand = new CheckpointableRandom(restartSeed);
+            bestNetwork = initializer.apply(rand);
+            bestFitness = fitness.evaluate(bestNetwork, Integer.MAX_VALUE);
+            initialFitness = bestFitness;
+            fitnessSum = bestFitness;
+            accepted = 0;
+            bestEvaluation = 1;
+            firstMutation = 0;
+        }
+
+        for (int m = firstMutation; m < numMutations; m++) {
+            if (checkpoint != null && m % SNAPSHOT_INTERVAL == 0)
+                checkpoint.publish(restart, m, initialFitness, bestFitness, fitnessSum, accepted,
+                        bestEvaluation, rand.getState(), bestNetwork);
+
+            N mutatedNetwork = mutator.apply(bestNetwork, rand);
+            int mutatedFitness = fitness.evaluate(mutatedNetwork, bestFitness);
+            fitnessSum += mutatedFitness;
+            if (metrics != null)
+                metrics.recordMove(mutatedFitness < bestFitness, m, bestFitness, mutatedFitness);
+            if (mutatedFitness < bestFitness) {
+                bestNetwork = mutatedNetwork;
+                bestFitness = mutatedFitness;
+                accepted++;
+                bestEvaluation = m + 2;
+            }
+        }
+        if (checkpoint != null)
+            checkpoint.publish(restart, numMutations, initialFitness, bestFitness, fitnessSum,
+                    accepted, bestEvaluation, rand.getState(), bestNetwork);
+        return new RestartResult<>(restart, bestNetwork, initialFitness, bestFitness,
+                numMutations + 1, fitnessSum, accepted, bestEvaluation);
+    }
+
+    /**
+     * A fitness function that may stop evaluating once the fitness reaches a cutoff.
+     *
+     * @param <N> the type of network being scored
+     */
+    public interface BoundedFitness<N> {
+
+        /**
+         * @param network the network to score
+         * @param cutoff the fitness at which evaluation may stop
+         * @return the fitness of the network (lower is better), or any value of at least
+         * cutoff if the fitness is at least cutoff
+         */
+        int evaluate(N network, int cutoff);
+    }
+
+    /**
+     * The outcome of a single restart.
+     *
+     * @param <N> the type of network being searched
+     */
+    public static class RestartResult<N> {
+
+        private final int restart;
+        private final N bestNetwork;
+        private final int initialFitness;
+        private final int bestFitness;
+        private final long evaluations;
+        private final long fitnessSum;
+        private final int accepted;
+        private final long evaluationsToBest;
+
+        RestartResult(int restart, N bestNetwork, int initialFitness, int bestFitness,
+                      long evaluations, long fitnessSum, int accepted, long evaluationsToBest) {
+            this.restart = restart;
+            this.bestNetwork = bestNetwork;
+            this.initialFitness = initialFitness;
+            this.bestFitness = bestFitness;
+            this.evaluations = evaluations;
+            this.fitnessSum = fitnessSum;
+            this.accepted = accepted;
+            this.evaluationsToBest = evaluationsToBest;
+        }
+
+        /**
+         * @return the index of this restart
+         */
+        public int getRestart() { return restart; }
+
+        /**
+         * @return the best network found by this restart
+         */
+        public N getBestNetwork() { return bestNetwork; }
+
+        /**
+         * @return the fitness of the starting network
+         */
+        public int getInitialFitness() { return initialFitness; }
+
+        /**
+         * @return the fitness of the best network found by this restart
+         */
+        public int getBestFitness() { return bestFitness; }
+
+        /**
+         * @return the number of fitness evaluations, including the starting network
+         */
+        public long getEvaluations() { return evaluations; }
+
+        /**
+         * @return the sum of every fitness evaluated
+         */
+        public long getFitnessSum() { return fitnessSum; }
+
+        /**
+         * @return the number of mutations that were kept
+         */
+        public int getAccepted() { return accepted; }
+
+        /**
+         * @return the number of fitness evaluations made by the time the best network was found,
+         * including the starting network
+         */
+        public long getEvaluationsToBest() { return evaluationsToBest; }
+
+        /**
+         * @return the average of every fitness evaluated by this restart
+         */
+        public double getAverageFitness() { return (double) fitnessSum / evaluations; }
+    }
+
+    /**
+     * The outcome of a whole run, made up of the result of every restart.
+     *
+     * @param <N> the type of network being searched
+     */
+    public static class Result<N> {
+
+        private final List<RestartResult<N>> restarts;
+        private final RestartResult<N> best;
+
+        Result(List<RestartResult<N>> restarts) {
+            this.restarts = restarts;
+            RestartResult<N> best = restarts.get(0);
+            for (RestartResult<N> restart : restarts)
+                if (restart.getBestFitness() < best.getBestFitness())
+                    best = restart;
+            this.best = best;
+        }
+
+        /**
+         * @return the results of every restart, in restart order
+         */
+        public List<RestartResult<N>> getRestarts() { return restarts; }
+
+        /**
+         * @return the best network found by any restart
+         */
+        public N getBestNetwork() { return best.getBestNetwork(); }
+
+        /**
+         * @return the fitness of the best network found by any restart
+         */
+        public int getBestFitness() { return best.getBestFitness(); }
+
+        /**
+         * @return the number of fitness evaluations of every restart
+         */
+        public long getEvaluations() {
+            long evaluations = 0;
+            for (RestartResult<N> restart : restarts)
+                evaluations += restart.getEvaluations();
+            return evaluations;
+        }
+
+        /**
+         * @return the average of every fitness evaluated by every restart
+         */
+        public double getAverageFitness() {
+            long sum = 0;
+            long evaluations = 0;
+            for (RestartResult<N> restart : restarts) {
+                sum += restart.getFitnessSum();
+                evaluations += restart.getEvaluations();
+            }
+            return (double) sum / evaluations;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package environment;
+
+import java.util.Arrays;
+
+/**
+ * A class that re-evaluates a comparison network after a single comparator has been replaced,
+ * without re-running the comparators in front of the replaced one.
+ *
+ * The network is evaluated on all binary inputs in bit-sliced form (see BitSlicedEvaluator).
+ * Every checkpointInterval comparators, the state of every wire for every input is saved. When
+ * the comparator at index i is replaced, evaluation resumes from the last checkpoint at or
+ * before i, so on average only about half of the network is re-run for each mutation tried
+ * by a hill-climbing or annealing step.
+ *
+ * The evaluator keeps its own copy of the comparators. Trying a replacement does not change
+ * anything; accepting one updates the comparators and every checkpoint after it. Replacements
+ * may be tried on several threads at once (TabuSearchEngine scores its candidate moves this
+ * way), but not while one is being accepted. IncrementalFitness puts an evaluator behind the
+ * mutator and fitness function of HillClimbingEngine and SimulatedAnnealingEngine.
+ *
+ * Each thread counts distinct unsorted outputs in a bitmap of its own that is reused between
+ * calls. Rather than clearing the whole bitmap, which for 16 wires is as many words as there
+ * are blocks of inputs, an evaluation removes only the outputs it added.
+ */
+public class IncrementalEvaluator {
+
+    // the default number of comparators between two checkpoints
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 8;
+
+    private final int numWires;
+    private final long numBlocks;
+    private final int checkpointInterval;
+
+    // the top and bottom wire index of every comparator
+    private final int[] tops;
+    private final int[] bottoms;
+
+    // checkpoints[c] holds the wire words before comparator (c + 1) * checkpointInterval,
+    // stored block by block with numWires words per block
+    private final long[][] checkpoints;
+
+    // the unsorted outputs of the evaluation in progress on each thread
+    private final ThreadLocal<Scratch> scratch;
+
+    // the fitness of the current network
+    private int fitness;
+
+    /**
+     * @param network the network to evaluate
+     * @param checkpointInterval the number of comparators between two checkpoints
+     */
+    public IncrementalEvaluator(ComparisonNetwork network, int checkpointInterval) {
+        this.numWires = network.numWires();
+        this.numBlocks = BitSlicedEvaluator.numBlocks(numWires);
+        this.checkpointInterval = checkpointInterval;
+        this.tops = BitSlicedEvaluator.topWires(network);
+        this.bottoms = BitSlicedEvaluator.bottomWires(network);
+        this.checkpoints = new long[Math.max(0, (tops.length - 1) / checkpointInterval)][];
+        for (int c = 0; c < checkpoints.length; c++)
+            checkpoints[c] = new long[(int) numBlocks * numWires];
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(numWires));
+        this.fitness = rebuild(0);
+    }
+
+    /**
+     * @param network the network to evaluate
+     */
+    public IncrementalEvaluator(ComparisonNetwork network) {
+        this(network, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * @return the number of unsorted outputs of the current network
+     */
+    public int fitness() {
+        return fitness;
+    }
+
+    /**
+     * @return the number of comparators in the current network
+     */
+    public int size() {
+        return tops.length;
+    }
+
+    /**
+     * Determines the fitness the network would have if the comparator at the given index were
+     * replaced. The current network is not changed.
+     *
+     * @param index the index of the comparator to replace
+     * @param c the comparator to put in its place
+     * @return the number of unsorted outputs of the mutated network
+     */
+    public int evaluateReplacement(int index, Comparator c) {
+        return evaluateReplacement(index, c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Determines the fitness the network would have if the comparator at the given index were
+     * replaced, giving up as soon as the number of unsorted outputs reaches the cutoff.
+     *
+     * @param index the index of the comparator to replace
+     * @param c the comparator to put in its place
+     * @param cutoff the count at which to stop evaluating
+     * @return the number of unsorted outputs of the mutated network, or cutoff if there are at
+     * least that many
+     */
+    public int evaluateReplacement(int index, Comparator c, int cutoff) {
+        int checkpoint = index / checkpointInterval;
+        int from = checkpoint * checkpointInterval;
+        Scratch unsortedOutputs = scratch.get();
+        long[] wires = unsortedOutputs.wires;
+
+        long block = 0;
+        for (; block < numBlocks && unsortedOutputs.size() < cutoff; block++) {
+            restore(wires, checkpoint, block);
+            BitSlicedEvaluator.applyComparators(wires, tops, bottoms, from, index);
+            long top = wires[c.getTopWire()];
+            long bottom = wires[c.getBottomWire()];
+            wires[c.getTopWire()] = top & bottom;
+            wires[c.getBottomWire()] = top | bottom;
+            BitSlicedEvaluator.applyComparators(wires, tops, bottoms, index + 1, tops.length);
+            unsortedOutputs.addUnsorted(wires);
+        }
+        SearchMetrics.countInputs(block * BitSlicedEvaluator.inputsPerBlock(numWires));
+        return Math.min(unsortedOutputs.reset(), cutoff);
+    }
+
+    /**
+     * Replaces the comparator at the given index and brings every later checkpoint up to date.
+     *
+     * @param index the index of the comparator to replace
+     * @param c the comparator to put in its place
+     * @return the number of unsorted outputs of the new network
+     */
+    public int acceptReplacement(int index, Comparator c) {
+        tops[index] = c.getTopWire();
+        bottoms[index] = c.getBottomWire();
+        fitness = rebuild(index / checkpointInterval);
+        return fitness;
+    }
+
+    /**
+     * @return a new ComparisonNetwork holding the current comparators
+     */
+    public ComparisonNetwork getNetwork() {
+        ComparisonNetwork network = new ComparisonNetwork(numWires);
+        for (int i = 0; i < tops.length; i++)
+            network.addComparator(tops[i], bottoms[i]);
+        return network;
+    }
+
+    /**
+     * Re-runs the network from the given checkpoint onwards, saving every later checkpoint.
+     *
+     * @param checkpoint the checkpoint to start from (0 is the raw inputs)
+     * @return the number of unsorted outputs of the network
+     */
+    private int rebuild(int checkpoint) {
+        Scratch unsortedOutputs = scratch.get();
+        long[] wires = unsortedOutputs.wires;
+
+        for (long block = 0; block < numBlocks; block++) {
+            restore(wires, checkpoint, block);
+            for (int c = checkpoint; c < checkpoints.length; c++) {
+                BitSlicedEvaluator.applyComparators(wires, tops, bottoms, c * checkpointInterval,
+                        (c + 1) * checkpointInterval);
+                System.arraycopy(wires, 0, checkpoints[c], (int) block * numWires, numWires);
+            }
+            BitSlicedEvaluator.applyComparators(wires, tops, bottoms,
+                    checkpoints.length * checkpointInterval, tops.length);
+            unsortedOutputs.addUnsorted(wires);
+        }
+        SearchMetrics.countInputs(numBlocks * BitSlicedEvaluator.inputsPerBlock(numWires));
+        return unsortedOutputs.reset();
+    }
+
+    /**
+     * Loads the wire words of a block as they were at a checkpoint.
+     *
+     * @param wires the wire words to fill
+     * @param checkpoint the checkpoint to load (0 is the raw inputs)
+     * @param block the block to load
+     */
+    private void restore(long[] wires, int checkpoint, long block) {
+        if (checkpoint == 0)
+            BitSlicedEvaluator.loadBlock(wires, block);
+        else
+            System.arraycopy(checkpoints[checkpoint - 1], (int) block * numWires, wires, 0, numWires);
+    }
+
+    /**
+     * The wire words and unsorted outputs of one thread's evaluations. The bitmap is empty
+     * between evaluations: reset() removes exactly the outputs added since the last reset.
+     */
+    private static final class Scratch {
+
+        private final long[] wires;
+        private final OutputSet outputs;
+
+        // the outputs added since the last reset, in the order they were added
+        private long[] added = new long[64];
+        private int size;
+
+        Scratch(int numWires) {
+            this.wires = new long[numWires];
+            this.outputs = new OutputSet(numWires);
+        }
+
+        /**
+         * Adds the unsorted outputs of a block, as BitSlicedEvaluator.addUnsorted does.
+         *
+         * @param wires the wire words of the block after the network
+         */
+        void addUnsorted(long[] wires) {
+            long unsorted = BitSlicedEvaluator.unsortedLanes(wires);
+            while (unsorted != 0) {
+                long output = BitSlicedEvaluator.extractPacked(wires, Long.numberOfTrailingZeros(unsorted));
+                if (outputs.add(output)) {
+                    if (size == added.length)
+                        added = Arrays.copyOf(added, 2 * size);
+                    added[size++] = output;
+                }
+                unsorted &= unsorted - 1;
+            }
+        }
+
+        /**
+         * @return the number of distinct unsorted outputs added since the last reset
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Empties the bitmap by removing the outputs added since the last reset.
+         *
+         * @return the number of distinct unsorted outputs that were added
+         */
+        int reset() {
+            int count = size;
+            for (int i = 0; i < count; i++)
+                outputs.remove(added[i]);
+            size = 0;
+            return count;
+        }
+    }
+}
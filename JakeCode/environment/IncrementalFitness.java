@@ -0,0 +1,88 @@
+package environment;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * A fitness function and mutator for HillClimbingEngine and SimulatedAnnealingEngine that score
+ * every mutant incrementally from its parent (see IncrementalEvaluator).
+ *
+ * mutate() replaces one comparator of a copy of the parent, drawing from the Random exactly as
+ * NetworkUtilities.copyMutate does, and remembers which comparator it replaced. evaluate() then
+ * scores that mutant by re-running only the comparators from the last checkpoint before the
+ * replaced one, and stops at the cutoff like any BoundedFitness. A search with the same seed
+ * therefore gives the same results as one using copyMutate and ComparisonNetwork.countUnsorted.
+ *
+ * The engines never say whether a mutant was kept, so that is worked out from the next call to
+ * mutate(): if its parent is the last mutant, the mutant was kept and the evaluator accepts its
+ * replacement. Any other parent (a new restart, or a network resumed from a checkpoint) gets an
+ * evaluator of its own, and any network that did not come from mutate() is evaluated in full.
+ *
+ * Each thread has its own evaluator, so one instance can be shared by every restart of a run, as
+ * long as a restart runs on a single thread (as it does in both engines).
+ */
+public class IncrementalFitness implements HillClimbingEngine.BoundedFitness<ComparisonNetwork> {
+
+    // the evaluator and last mutation of each thread
+    private final ThreadLocal<State> states = ThreadLocal.withInitial(State::new);
+
+    /**
+     * Creates a mutant of a copy of the network, remembering the replaced comparator so that the
+     * mutant can be evaluated incrementally.
+     *
+     * @param parent the network to mutate, which is left as it was
+     * @param rand the Random to draw the mutation from
+     * @return a new network with one comparator of the parent replaced
+     */
+    public ComparisonNetwork mutate(ComparisonNetwork parent, Random rand) {
+        State state = states.get();
+        if (parent != state.current) {
+            if (parent == state.mutant) {
+                state.evaluator.acceptReplacement(state.index, state.comparator);
+            } else {
+                state.evaluator = new IncrementalEvaluator(parent);
+            }
+            state.current = parent;
+        }
+
+        // the same draws as NetworkUtilities.copyMutate
+        int randComparatorIndex = rand.nextInt(parent.size());
+        int topIndex = rand.nextInt(parent.numWires());
+        int bottomIndex = rand.nextInt(parent.numWires());
+        Comparator mutatedComparator = new Comparator(topIndex, bottomIndex);
+
+        ComparisonNetwork mutant = new ComparisonNetwork(parent.numWires(),
+                new ArrayList<>(parent.getNetwork()));
+        mutant.replace(randComparatorIndex, mutatedComparator);
+        state.mutant = mutant;
+        state.index = randComparatorIndex;
+        state.comparator = mutatedComparator;
+        return mutant;
+    }
+
+    /**
+     * @param network the network to score
+     * @param cutoff the number of unsorted outputs at which evaluation may stop
+     * @return the number of unsorted outputs of the network, or cutoff if there are at least
+     * that many
+     */
+    @Override
+    public int evaluate(ComparisonNetwork network, int cutoff) {
+        State state = states.get();
+        if (network == state.mutant && state.evaluator != null)
+            return state.evaluator.evaluateReplacement(state.index, state.comparator, cutoff);
+        return network.countUnsorted(cutoff);
+    }
+
+    /**
+     * The evaluator of one thread, the network it holds, and the last mutant made from it.
+     */
+    private static final class State {
+
+        private IncrementalEvaluator evaluator;
+        private ComparisonNetwork current;
+        private ComparisonNetwork mutant;
+        private int index;
+        private Comparator comparator;
+    }
+}
@@ -0,0 +1,205 @@
+package environment;
+
+import java.nio.LongBuffer;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A source of binary inputs for a comparison network, streamed as packed longs (see
+ * PackedBinarySequence) so that no input is ever materialized as an object.
+ *
+ * A source can be every input on its wires, a subset such as the unsorted outputs of a prefix
+ * network, or a random sample. Every source hands out its inputs through a Spliterator.OfLong
+ * that can be split, so a source can be evaluated in parallel with stream(true).
+ */
+public abstract class InputSource {
+
+    // the largest number of wires an InputSource supports, so that 2^numWires fits in a long
+    public static final int MAX_WIRES = 62;
+
+    private final int numWires;
+
+    private InputSource(int numWires) {
+        if (numWires < 0 || numWires > MAX_WIRES)
+            throw new IllegalArgumentException("an InputSource holds at most " + MAX_WIRES +
+                    " wires, not " + numWires);
+        this.numWires = numWires;
+    }
+
+    /**
+     * @param numWires the number of wires
+     * @return a source of all 2^numWires inputs, in increasing order
+     */
+    public static InputSource all(int numWires) {
+        return new InputSource(numWires) {
+            @Override
+            public long size() {
+                return 1L << numWires;
+            }
+
+            @Override
+            public Spliterator.OfLong spliterator() {
+                return LongStream.range(0, 1L << numWires).spliterator();
+            }
+        };
+    }
+
+    /**
+     * @param inputs a set of packed inputs, such as the unsorted outputs of a prefix network
+     * @return a source of the inputs in the set, in increasing order
+     */
+    public static InputSource of(OutputSet inputs) {
+        return new InputSource(inputs.numWires()) {
+            @Override
+            public long size() {
+                return inputs.size();
+            }
+
+            @Override
+            public Spliterator.OfLong spliterator() {
+                return inputs.spliterator();
+            }
+        };
+    }
+
+    /**
+     * @param numWires the number of wires the inputs are on
+     * @param inputs packed inputs, such as an output set mapped from an OutputSetStore; the
+     *               inputs between its position and limit are used, and the position is not
+     *               changed
+     * @return a source of the inputs in the buffer
+     */
+    public static InputSource of(int numWires, LongBuffer inputs) {
+        return new InputSource(numWires) {
+            @Override
+            public long size() {
+                return inputs.remaining();
+            }
+
+            @Override
+            public Spliterator.OfLong spliterator() {
+                return new BufferSpliterator(inputs, inputs.position(), inputs.limit());
+            }
+        };
+    }
+
+    /**
+     * @param numWires the number of wires the inputs are on
+     * @param inputs packed inputs
+     * @return a source of the inputs in the array
+     */
+    public static InputSource of(int numWires, long[] inputs) {
+        return new InputSource(numWires) {
+            @Override
+            public long size() {
+                return inputs.length;
+            }
+
+            @Override
+            public Spliterator.OfLong spliterator() {
+                return Spliterators.spliterator(inputs, Spliterator.ORDERED | Spliterator.NONNULL);
+            }
+        };
+    }
+
+    /**
+     * A source of inputs drawn uniformly at random, with replacement. The same seed always
+     * gives the same inputs, however the source is split.
+     *
+     * @param numWires the number of wires
+     * @param count the number of inputs to draw
+     * @param seed the seed to draw the inputs with
+     * @return a source of count random inputs
+     */
+    public static InputSource sample(int numWires, long count, long seed) {
+        return new InputSource(numWires) {
+            @Override
+            public long size() {
+                return count;
+            }
+
+            @Override
+            public Spliterator.OfLong spliterator() {
+                return new SplittableRandom(seed).longs(count, 0, 1L << numWires).spliterator();
+            }
+        };
+    }
+
+    /**
+     * @return the number of wires the inputs are on
+     */
+    public int numWires() {
+        return numWires;
+    }
+
+    /**
+     * @return the number of inputs this source hands out
+     */
+    public abstract long size();
+
+    /**
+     * @return a new spliterator over the packed inputs of this source
+     */
+    public abstract Spliterator.OfLong spliterator();
+
+    /**
+     * @param parallel whether the stream should be parallel
+     * @return a new stream of the packed inputs of this source
+     */
+    public LongStream stream(boolean parallel) {
+        return StreamSupport.longStream(spliterator(), parallel);
+    }
+
+    /**
+     * A spliterator over the entries [index, end) of a LongBuffer, read with absolute gets.
+     */
+    private static final class BufferSpliterator implements Spliterator.OfLong {
+        private final LongBuffer buffer;
+        private int index;
+        private final int end;
+
+        private BufferSpliterator(LongBuffer buffer, int index, int end) {
+            this.buffer = buffer;
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (index >= end)
+                return false;
+            action.accept(buffer.get(index++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            for (; index < end; index++)
+                action.accept(buffer.get(index));
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            int mid = (index + end) >>> 1;
+            if (mid <= index)
+                return null;
+            BufferSpliterator prefix = new BufferSpliterator(buffer, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+}
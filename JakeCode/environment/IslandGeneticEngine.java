@@ -0,0 +1,374 @@
+package environment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Phaser;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * An island-model genetic algorithm that evolves one population per island, each island on its
+ * own thread.
+ *
+ * Every generation, an island keeps its ELITES best individuals and fills the rest of its
+ * population with children. Each child comes from a parent picked by tournament, crossed with a
+ * second parent using a randomly chosen crossover, and then mutated. The children of a
+ * generation are scored together as one batch (see ComparisonNetwork.countUnsorted(List)).
+ *
+ * Every migration interval, each island sends copies of its best individuals to the next island
+ * in a ring, where they replace the worst. Each island only ever reads its own inbox and writes
+ * to its neighbour's, so migration costs one queue per island and a barrier; the islands wait
+ * for each other only at the barrier. Since every island has its own Random, seeded from a
+ * single master seed, and migrants are always exchanged at the same generations, a run with the
+ * same seed gives the same results.
+ *
+ * Like HillClimbingEngine, the engine is generic in the network type. For this package the
+ * operators are NetworkUtilities.createRandomNetwork, NetworkUtilities.copyMutate, and
+ * NetworkUtilities.spliceCrossover and layerCrossover. The mutator must not change its argument,
+ * since parents stay in the population.
+ *
+ * @param <N> the type of network being evolved
+ */
+public class IslandGeneticEngine<N> {
+
+    // the number of best individuals copied unchanged into the next generation
+    private static final int ELITES = 2;
+
+    // the number of individuals a parent is picked from
+    private static final int TOURNAMENT_SIZE = 3;
+
+    // creates a random individual
+    private final Function<Random, N> initializer;
+
+    // creates a mutant of an individual, without changing it
+    private final BiFunction<N, Random, N> mutator;
+
+    // creates a child of two individuals
+    private final List<Crossover<N>> crossovers;
+
+    // scores a batch of individuals, lower is better
+    private final BatchFitness<N> fitness;
+
+    // the number of islands, each run on its own thread
+    private final int numIslands;
+
+    private double crossoverRate = 0.9;
+    private int migrationInterval = 20;
+    private int numMigrants = 2;
+
+    /**
+     * @param initializer creates a random individual
+     * @param mutator creates a mutant of an individual, without changing it
+     * @param crossovers the crossovers a child may be created with, chosen uniformly
+     * @param fitness scores a batch of individuals, lower is better
+     * @param numIslands the number of islands, each run on its own thread
+     */
+    public IslandGeneticEngine(Function<Random, N> initializer, BiFunction<N, Random, N> mutator,
+                               List<Crossover<N>> crossovers, BatchFitness<N> fitness, int numIslands) {
+        if (crossovers.isEmpty())
+            throw new IllegalArgumentException("at least one crossover is needed");
+        this.initializer = initializer;
+        this.mutator = mutator;
+        this.crossovers = new ArrayList<>(crossovers);
+        this.fitness = fitness;
+        this.numIslands = numIslands;
+    }
+
+    /**
+     * @param crossoverRate the probability that a child is created by crossover rather than
+     * from a single parent
+     */
+    public void setCrossoverRate(double crossoverRate) {
+        this.crossoverRate = crossoverRate;
+    }
+
+    /**
+     * @param migrationInterval the number of generations between migrations
+     * @param numMigrants the number of best individuals each island sends to the next
+     */
+    public void setMigration(int migrationInterval, int numMigrants) {
+        if (migrationInterval <= 0)
+            throw new IllegalArgumentException("migrationInterval must be positive, not " + migrationInterval);
+        if (numMigrants < 0)
+            throw new IllegalArgumentException("numMigrants must not be negative, not " + numMigrants);
+        this.migrationInterval = migrationInterval;
+        this.numMigrants = numMigrants;
+    }
+
+    /**
+     * Evolves every island for a number of generations.
+     *
+     * @param populationSize the number of individuals on each island
+     * @param numGenerations the number of generations
+     * @param seed the master seed that every island's Random is derived from
+     * @return the best individual of every island and the best overall
+     */
+    public Result<N> run(int populationSize, int numGenerations, long seed) {
+        if (populationSize <= ELITES + numMigrants)
+            throw new IllegalArgumentException("a population of " + populationSize +
+                    " is too small for " + ELITES + " elites and " + numMigrants + " migrants");
+
+        List<Queue<Individual<N>>> inboxes = new ArrayList<>();
+        for (int i = 0; i < numIslands; i++)
+            inboxes.add(new ConcurrentLinkedQueue<>());
+        Phaser migration = new Phaser(numIslands);
+
+        Random seeds = new Random(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(numIslands);
+        try {
+            List<Future<IslandResult<N>>> futures = new ArrayList<>();
+            for (int i = 0; i < numIslands; i++) {
+                final int island = i;
+                final long islandSeed = seeds.nextLong();
+                futures.add(executor.submit(() -> {
+                    try {
+                        return evolve(island, populationSize, numGenerations, new Random(islandSeed),
+                                inboxes.get(island), inboxes.get((island + 1) % numIslands), migration);
+                    } finally {
+                        migration.arriveAndDeregister();
+                    }
+                }));
+            }
+
+            List<IslandResult<N>> islands = new ArrayList<>();
+            for (Future<IslandResult<N>> future : futures)
+                islands.add(future.get());
+            return new Result<>(islands);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("the genetic algorithm was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("an island failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Evolves a single island.
+     *
+     * @param island the index of this island
+     * @param populationSize the number of individuals on the island
+     * @param numGenerations the number of generations
+     * @param rand the Random used by this island only
+     * @param inbox the queue migrants to this island arrive in
+     * @param neighbour the inbox of the next island in the ring
+     * @param migration the barrier islands meet at before reading their inboxes
+     * @return the result of this island
+     */
+    private IslandResult<N> evolve(int island, int populationSize, int numGenerations, Random rand,
+                                   Queue<Individual<N>> inbox, Queue<Individual<N>> neighbour,
+                                   Phaser migration) {
+        List<N> networks = new ArrayList<>(populationSize);
+        for (int i = 0; i < populationSize; i++)
+            networks.add(initializer.apply(rand));
+        List<Individual<N>> population = score(networks);
+        long evaluations = populationSize;
+        Collections.sort(population);
+        int initialFitness = population.get(0).fitness;
+
+        for (int g = 1; g <= numGenerations; g++) {
+            List<N> children = new ArrayList<>(populationSize - ELITES);
+            for (int i = ELITES; i < populationSize; i++) {
+                N parent = tournament(population, rand).network;
+                N child = rand.nextDouble() < crossoverRate
+                        ? crossovers.get(rand.nextInt(crossovers.size()))
+                                .cross(parent, tournament(population, rand).network, rand)
+                        : parent;
+                children.add(mutator.apply(child, rand));
+            }
+
+            List<Individual<N>> next = new ArrayList<>(population.subList(0, ELITES));
+            next.addAll(score(children));
+            evaluations += children.size();
+            Collections.sort(next);
+            population = next;
+
+            if (numIslands > 1 && g % migrationInterval == 0) {
+                neighbour.addAll(population.subList(0, numMigrants));
+                migration.arriveAndAwaitAdvance();
+
+                // take exactly this round's migrants; the previous island may already be
+                // queueing the next round's behind them
+                for (int i = 0; i < numMigrants; i++)
+                    population.set(population.size() - 1 - i, inbox.poll());
+                Collections.sort(population);
+            }
+        }
+        return new IslandResult<>(island, population.get(0).network, initialFitness,
+                population.get(0).fitness, evaluations);
+    }
+
+    /**
+     * @param networks the networks to score, as one batch
+     * @return the networks with their fitness
+     */
+    private List<Individual<N>> score(List<N> networks) {
+        int[] scores = fitness.evaluate(networks);
+        List<Individual<N>> individuals = new ArrayList<>(networks.size());
+        for (int i = 0; i < scores.length; i++)
+            individuals.add(new Individual<>(networks.get(i), scores[i]));
+        return individuals;
+    }
+
+    /**
+     * @param population the population, sorted from best to worst
+     * @param rand the Random to draw the contestants from
+     * @return the best of TOURNAMENT_SIZE individuals drawn at random
+     */
+    private static <N> Individual<N> tournament(List<Individual<N>> population, Random rand) {
+        int best = rand.nextInt(population.size());
+        for (int i = 1; i < TOURNAMENT_SIZE; i++)
+            best = Math.min(best, rand.nextInt(population.size()));
+        return population.get(best);
+    }
+
+    /**
+     * Creates a child of two individuals.
+     *
+     * @param <N> the type of network being evolved
+     */
+    public interface Crossover<N> {
+
+        /**
+         * @param first the first parent
+         * @param second the second parent
+         * @param rand the Random to draw from
+         * @return a new individual, without changing either parent
+         */
+        N cross(N first, N second, Random rand);
+    }
+
+    /**
+     * Scores a batch of individuals at once.
+     *
+     * @param <N> the type of network being scored
+     */
+    public interface BatchFitness<N> {
+
+        /**
+         * @param networks the networks to score
+         * @return the fitness of each network (lower is better), in order
+         */
+        int[] evaluate(List<N> networks);
+    }
+
+    /**
+     * An individual of a population and its fitness, ordered from best to worst.
+     */
+    private static final class Individual<N> implements Comparable<Individual<N>> {
+
+        private final N network;
+        private final int fitness;
+
+        Individual(N network, int fitness) {
+            this.network = network;
+            this.fitness = fitness;
+        }
+
+        @Override
+        public int compareTo(Individual<N> other) {
+            return Integer.compare(fitness, other.fitness);
+        }
+    }
+
+    /**
+     * The outcome of a single island.
+     *
+     * @param <N> the type of network being evolved
+     */
+    public static class IslandResult<N> {
+
+        private final int island;
+        private final N bestNetwork;
+        private final int initialFitness;
+        private final int bestFitness;
+        private final long evaluations;
+
+        IslandResult(int island, N bestNetwork, int initialFitness, int bestFitness, long evaluations) {
+            this.island = island;
+            this.bestNetwork = bestNetwork;
+            this.initialFitness = initialFitness;
+            this.bestFitness = bestFitness;
+            this.evaluations = evaluations;
+        }
+
+        /**
+         * @return the index of this island
+         */
+        public int getIsland() { return island; }
+
+        /**
+         * @return the best network on this island at the end
+         */
+        public N getBestNetwork() { return bestNetwork; }
+
+        /**
+         * @return the fitness of the best network of the initial population
+         */
+        public int getInitialFitness() { return initialFitness; }
+
+        /**
+         * @return the fitness of the best network on this island at the end
+         */
+        public int getBestFitness() { return bestFitness; }
+
+        /**
+         * @return the number of fitness evaluations on this island
+         */
+        public long getEvaluations() { return evaluations; }
+    }
+
+    /**
+     * The outcome of a whole run, made up of the result of every island.
+     *
+     * @param <N> the type of network being evolved
+     */
+    public static class Result<N> {
+
+        private final List<IslandResult<N>> islands;
+        private final IslandResult<N> best;
+
+        Result(List<IslandResult<N>> islands) {
+            this.islands = islands;
+            IslandResult<N> best = islands.get(0);
+            for (IslandResult<N> island : islands)
+                if (island.getBestFitness() < best.getBestFitness())
+                    best = island;
+            this.best = best;
+        }
+
+        /**
+         * @return the results of every island, in island order
+         */
+        public List<IslandResult<N>> getIslands() { return islands; }
+
+        /**
+         * @return the best network found by any island
+         */
+        public N getBestNetwork() { return best.getBestNetwork(); }
+
+        /**
+         * @return the fitness of the best network found by any island
+         */
+        public int getBestFitness() { return best.getBestFitness(); }
+
+        /**
+         * @return the number of fitness evaluations on every island
+         */
+        public long getEvaluations() {
+            long evaluations = 0;
+            for (IslandResult<N> island : islands)
+                evaluations += island.getEvaluations();
+            return evaluations;
+        }
+    }
+}
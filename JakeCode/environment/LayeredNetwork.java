@@ -0,0 +1,287 @@
+package environment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A layered view of a comparison network. Every comparator is placed greedily in the earliest
+ * layer after the last layer that uses either of its wires, so the comparators in a layer share
+ * no wires and can all run at the same time. The number of layers is the depth of the network.
+ *
+ * Comparators that can never swap are left out: degenerate comparators (top wire == bottom
+ * wire), and a comparator that repeats the last comparator on both of its wires. Within a layer
+ * the comparators are sorted by (top, bottom), so networks that only differ in the order of
+ * independent comparators have identical layers (see NetworkFingerprint).
+ *
+ * For packed evaluation every layer is compiled into one step per distinct comparator length d
+ * (bottom wire - top wire). Since the comparators of a layer are disjoint, all of those with the
+ * same length are applied together with a mask M of their bottom bits:
+ *
+ *     t = (v >>> d) & ~v & M;
+ *     v ^= t | (t << d);
+ *
+ * t marks the comparators whose top wire holds a 1 and bottom wire holds a 0, and the XOR swaps
+ * exactly those.
+ */
+public final class LayeredNetwork {
+
+    private final int numWires;
+
+    // the top and bottom wires of the comparators in each layer, sorted by (top, bottom)
+    private final int[][] layerTops;
+    private final int[][] layerBottoms;
+
+    // the steps of layer i are [layerSteps[i], layerSteps[i + 1])
+    private final int[] layerSteps;
+    private final int[] stepDistances;
+    private final long[] stepMasks;
+
+    private final int size;
+
+    private LayeredNetwork(int numWires, int[][] layerTops, int[][] layerBottoms) {
+        this.numWires = numWires;
+        this.layerTops = layerTops;
+        this.layerBottoms = layerBottoms;
+
+        int numComparators = 0;
+        for (int[] tops : layerTops)
+            numComparators += tops.length;
+        this.size = numComparators;
+
+        // one step per distinct length in each layer, at most one per comparator
+        layerSteps = new int[layerTops.length + 1];
+        int[] distances = new int[numComparators];
+        long[] masks = new long[numComparators];
+        int numSteps = 0;
+        for (int layer = 0; layer < layerTops.length; layer++) {
+            layerSteps[layer] = numSteps;
+            for (int i = 0; i < layerTops[layer].length; i++) {
+                int d = layerBottoms[layer][i] - layerTops[layer][i];
+                long bottomBit = 1L << (numWires - 1 - layerBottoms[layer][i]);
+                int step = layerSteps[layer];
+                while (step < numSteps && distances[step] != d)
+                    step++;
+                if (step == numSteps) {
+                    distances[numSteps] = d;
+                    masks[numSteps++] = 0;
+                }
+                masks[step] |= bottomBit;
+            }
+        }
+        layerSteps[layerTops.length] = numSteps;
+        this.stepDistances = Arrays.copyOf(distances, numSteps);
+        this.stepMasks = Arrays.copyOf(masks, numSteps);
+    }
+
+    /**
+     * Packs the comparators of a network into layers.
+     *
+     * @param network the network to layer
+     * @return the layered network
+     */
+    public static LayeredNetwork of(ComparisonNetwork network) {
+        int numWires = network.numWires();
+        if (numWires > PackedBinarySequence.MAX_WIRES)
+            throw new IllegalArgumentException("a LayeredNetwork holds at most " +
+                    PackedBinarySequence.MAX_WIRES + " wires, not " + numWires);
+
+        // the layer of the last comparator on each wire, and that comparator's index
+        int[] lastLayer = new int[numWires];
+        int[] lastComparator = new int[numWires];
+        Arrays.fill(lastComparator, -1);
+
+        // each comparator encoded as (layer << 16) | (top << 8) | bottom, so sorting the
+        // encodings sorts by layer and then by (top, bottom)
+        int[] encoded = new int[network.size()];
+        int count = 0;
+        int depth = 0;
+        for (int i = 0; i < network.size(); i++) {
+            Comparator c = network.getNetwork().get(i);
+            int top = c.getTopWire();
+            int bottom = c.getBottomWire();
+            if (top == bottom)
+                continue;
+
+            int previous = lastComparator[top];
+            if (previous >= 0 && previous == lastComparator[bottom] &&
+                    (encoded[previous] & 0xFFFF) == ((top << 8) | bottom))
+                continue;
+
+            int layer = Math.max(lastLayer[top], lastLayer[bottom]) + 1;
+            lastLayer[top] = layer;
+            lastLayer[bottom] = layer;
+            lastComparator[top] = count;
+            lastComparator[bottom] = count;
+            encoded[count++] = (layer << 16) | (top << 8) | bottom;
+            depth = Math.max(depth, layer);
+        }
+
+        int[] sorted = Arrays.copyOf(encoded, count);
+        Arrays.sort(sorted);
+
+        int[] layerSizes = new int[depth];
+        for (int e : sorted)
+            layerSizes[(e >>> 16) - 1]++;
+        int[][] layerTops = new int[depth][];
+        int[][] layerBottoms = new int[depth][];
+        int next = 0;
+        for (int layer = 0; layer < depth; layer++) {
+            layerTops[layer] = new int[layerSizes[layer]];
+            layerBottoms[layer] = new int[layerSizes[layer]];
+            for (int i = 0; i < layerSizes[layer]; i++, next++) {
+                layerTops[layer][i] = (sorted[next] >>> 8) & 0xFF;
+                layerBottoms[layer][i] = sorted[next] & 0xFF;
+            }
+        }
+        return new LayeredNetwork(numWires, layerTops, layerBottoms);
+    }
+
+    /**
+     * @return the number of layers in this network
+     */
+    public int depth() {
+        return layerTops.length;
+    }
+
+    /**
+     * @return the number of comparators in this network, not counting any left out
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of wires this network contains
+     */
+    public int numWires() {
+        return numWires;
+    }
+
+    /**
+     * @param layer the index of a layer, from 0
+     * @return the comparators in that layer, sorted by (top, bottom)
+     */
+    public ArrayList<Comparator> getLayer(int layer) {
+        ArrayList<Comparator> comparators = new ArrayList<>(layerTops[layer].length);
+        for (int i = 0; i < layerTops[layer].length; i++)
+            comparators.add(new Comparator(layerTops[layer][i], layerBottoms[layer][i]));
+        return comparators;
+    }
+
+    /**
+     * @return a flat network with the comparators of this network, one layer after another
+     */
+    public ComparisonNetwork toComparisonNetwork() {
+        ArrayList<Comparator> comparators = new ArrayList<>(size);
+        for (int layer = 0; layer < depth(); layer++)
+            comparators.addAll(getLayer(layer));
+        return new ComparisonNetwork(numWires, comparators);
+    }
+
+    /**
+     * Evaluates this network on a packed input, one layer at a time.
+     *
+     * @param packedSequence the packed input (see PackedBinarySequence) fed into the network
+     * @return the packed output of the network
+     */
+    public long operateOnOneBinary(long packedSequence) {
+        long v = packedSequence;
+        for (int step = 0; step < stepDistances.length; step++) {
+            int d = stepDistances[step];
+            long t = (v >>> d) & ~v & stepMasks[step];
+            v ^= t | (t << d);
+        }
+        return v;
+    }
+
+    /**
+     * Evaluates this network on all binary inputs up until numWires.
+     *
+     * @return the unsorted outputs produced by this network
+     */
+    public OutputSet unsortedOutputSet() {
+        OutputSet unsortedOutputs = new OutputSet(numWires);
+        long numInputs = 1L << numWires;
+        for (long input = 0; input < numInputs; input++) {
+            long output = operateOnOneBinary(input);
+            if (!PackedBinarySequence.isSorted(output))
+                unsortedOutputs.add(output);
+        }
+        SearchMetrics.countInputs(numInputs);
+        return unsortedOutputs;
+    }
+
+    /**
+     * Counts the unsorted outputs of this network on all binary inputs, stopping as soon as the
+     * count reaches the cutoff.
+     *
+     * @param cutoff the count at which to stop evaluating
+     * @return the number of unsorted outputs, or cutoff if there are at least that many
+     */
+    public int countUnsorted(int cutoff) {
+        OutputSet unsortedOutputs = new OutputSet(numWires);
+        long numInputs = 1L << numWires;
+        long input = 0;
+        for (; input < numInputs && unsortedOutputs.size() < cutoff; input++) {
+            long output = operateOnOneBinary(input);
+            if (!PackedBinarySequence.isSorted(output))
+                unsortedOutputs.add(output);
+        }
+        SearchMetrics.countInputs(input);
+        return Math.min(unsortedOutputs.size(), cutoff);
+    }
+
+    /**
+     * A fitness that penalizes depth as well as unsorted outputs: the number of unsorted outputs
+     * plus depthWeight for every layer. With a depthWeight of 0 this is the usual fitness.
+     *
+     * @param network the network to score
+     * @param depthWeight the fitness added per layer
+     * @param cutoff the fitness at which evaluation may stop
+     * @return the depth-penalized fitness, or cutoff if it is at least cutoff
+     */
+    public static int depthPenalizedFitness(ComparisonNetwork network, int depthWeight, int cutoff) {
+        if (depthWeight == 0)
+            return network.countUnsorted(cutoff);
+        int penalty = depthWeight * of(network).depth();
+        if (penalty >= cutoff)
+            return cutoff;
+        return penalty + network.countUnsorted(cutoff - penalty);
+    }
+
+    /**
+     * A fitness that penalizes depth as well as unsorted outputs, as depthPenalizedFitness()
+     * does, but counts the unsorted outputs with the given fitness (e.g. an IncrementalFitness).
+     *
+     * @param unsortedCount counts the unsorted outputs of a network, stopping at a cutoff
+     * @param depthWeight the fitness added per layer
+     * @return the depth-penalized fitness
+     */
+    public static HillClimbingEngine.BoundedFitness<ComparisonNetwork> depthPenalized(
+            HillClimbingEngine.BoundedFitness<ComparisonNetwork> unsortedCount, int depthWeight) {
+        if (depthWeight == 0)
+            return unsortedCount;
+        return (network, cutoff) -> {
+            int penalty = depthWeight * of(network).depth();
+            if (penalty >= cutoff)
+                return cutoff;
+            return penalty + unsortedCount.evaluate(network, cutoff - penalty);
+        };
+    }
+
+    /**
+     * @return the layers of this network, one per line
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        for (int layer = 0; layer < depth(); layer++) {
+            str.append("Layer ").append(layer + 1).append(':');
+            for (int i = 0; i < layerTops[layer].length; i++)
+                str.append(" (").append(layerTops[layer][i]).append(", ")
+                        .append(layerBottoms[layer][i]).append(')');
+            str.append('\n');
+        }
+        return str.toString();
+    }
+}
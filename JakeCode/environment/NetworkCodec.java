@@ -0,0 +1,43 @@
+package environment;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes networks to and reads them from a compact binary form, so that search state holding
+ * networks can be checkpointed.
+ *
+ * @param <N> the type of network
+ */
+public interface NetworkCodec<N> {
+
+    /**
+     * ComparisonNetworks as records of a NetworkFile, without a fitness.
+     */
+    NetworkCodec<ComparisonNetwork> COMPARISON_NETWORK = new NetworkCodec<ComparisonNetwork>() {
+        @Override
+        public void write(DataOutput out, ComparisonNetwork network) throws IOException {
+            NetworkFile.writeRecord(out, network, NetworkFile.NO_FITNESS);
+        }
+
+        @Override
+        public ComparisonNetwork read(DataInput in) throws IOException {
+            return NetworkFile.readRecord(in).getNetwork();
+        }
+    };
+
+    /**
+     * @param out the output to write to
+     * @param network the network to write
+     * @throws IOException if the write fails
+     */
+    void write(DataOutput out, N network) throws IOException;
+
+    /**
+     * @param in the input to read from
+     * @return the network read
+     * @throws IOException if the read fails
+     */
+    N read(DataInput in) throws IOException;
+}
@@ -0,0 +1,483 @@
+package environment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiles comparison networks into generated classes with every comparator unrolled into
+ * straight-line, branch-free code, with its wire indices folded into the code as constants.
+ *
+ * For packed inputs a comparator between top wire t and bottom wire b becomes, with
+ * d = b - t and pb = numWires - 1 - b the bit of the bottom wire:
+ *
+ *     x = (v >>> d) & ~v & (1L << pb);
+ *     v ^= x | (x << d);
+ *
+ * and for bit-sliced wire words it becomes one AND and one OR on two constant array indices.
+ *
+ * The classes are defined as hidden classes, so they are not visible to any class loader and
+ * are unloaded as soon as nothing refers to them. Compiled networks are kept in an LRU cache
+ * keyed by the network's comparators; once a network falls out of the cache its class can be
+ * unloaded. Compiling costs far more than one evaluation, so a network is only compiled once it
+ * has been asked for compileThreshold times, and is interpreted until then. Networks with more
+ * than MAX_COMPILED_COMPARATORS comparators are always interpreted, since their code would
+ * not fit in one method.
+ *
+ * Since the class is written opcode by opcode, every compiled network is checked against the
+ * interpreter before it is returned: VERIFIED_BLOCKS blocks of 64 inputs are run through both,
+ * bit-sliced and packed, and a network whose outputs differ is an IllegalStateException. This
+ * costs far less than defining the class.
+ *
+ * fitness() puts a compiler behind HillClimbingEngine.BoundedFitness, so a search can evaluate
+ * its candidates with compiled code, and EvaluationStrategy.COMPILED evaluates a single network
+ * this way.
+ *
+ * The compiler is thread-safe.
+ */
+public class NetworkCompiler {
+
+    // the largest network that is compiled, keeping each generated method well under 64 KB
+    public static final int MAX_COMPILED_COMPARATORS = 1000;
+
+    // the number of 64-input blocks every compiled network is checked on
+    private static final int VERIFIED_BLOCKS = 4;
+
+    private static final String CLASS_NAME = "environment/NetworkCompiler$Compiled";
+    private static final String INTERFACE_NAME = "environment/CompiledNetwork";
+
+    private final int capacity;
+    private final int compileThreshold;
+
+    // guarded by itself; in access order, so the eldest entry is the least recently used
+    private final Map<Key, Entry> entries;
+
+    private long compiled;
+
+    /**
+     * @param capacity the largest number of networks to remember
+     * @param compileThreshold the number of times a network must be asked for before it is
+     *                         compiled (1 compiles every network straight away)
+     */
+    public NetworkCompiler(int capacity, int compileThreshold) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive, not " + capacity);
+        this.capacity = capacity;
+        this.compileThreshold = compileThreshold;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > NetworkCompiler.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets a network ready to be evaluated: compiled if it has now been asked for at least
+     * compileThreshold times, and interpreted otherwise.
+     *
+     * @param network the network to evaluate
+     * @return the compiled or interpreted network
+     */
+    public CompiledNetwork get(ComparisonNetwork network) {
+        Key key = new Key(network);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.computeIfAbsent(key, k -> new Entry());
+            entry.requests++;
+            if (entry.network != null)
+                return entry.network;
+            if (entry.requests < compileThreshold || key.tops.length > MAX_COMPILED_COMPARATORS)
+                return new Interpreted(key.numWires, key.tops, key.bottoms);
+        }
+
+        // compile outside the lock; two threads may both compile the same network
+        CompiledNetwork compiledNetwork = compile(key.numWires, key.tops, key.bottoms);
+        synchronized (entries) {
+            entry.network = compiledNetwork;
+            compiled++;
+        }
+        return compiledNetwork;
+    }
+
+    /**
+     * Compiles a network straight away, without caching it.
+     *
+     * @param network the network to compile
+     * @return the compiled network
+     */
+    public static CompiledNetwork compile(ComparisonNetwork network) {
+        if (network.size() > MAX_COMPILED_COMPARATORS)
+            throw new IllegalArgumentException("cannot compile more than " +
+                    MAX_COMPILED_COMPARATORS + " comparators, not " + network.size());
+        return compile(network.numWires(), BitSlicedEvaluator.topWires(network),
+                BitSlicedEvaluator.bottomWires(network));
+    }
+
+    /**
+     * @return a fitness that counts the unsorted outputs of each network with the compiled or
+     * interpreted network this compiler gets for it, stopping at the cutoff
+     */
+    public HillClimbingEngine.BoundedFitness<ComparisonNetwork> fitness() {
+        return (network, cutoff) -> get(network).countUnsorted(cutoff);
+    }
+
+    /**
+     * @return the number of networks compiled by this compiler
+     */
+    public long getCompiledCount() {
+        synchronized (entries) {
+            return compiled;
+        }
+    }
+
+    /**
+     * @return the number of networks currently remembered
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Generates, defines and instantiates a hidden class for the given comparators, and checks
+     * it against the interpreter.
+     */
+    private static CompiledNetwork compile(int numWires, int[] tops, int[] bottoms) {
+        byte[] bytes = generate(numWires, tops, bottoms);
+        CompiledNetwork compiledNetwork;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            compiledNetwork = (CompiledNetwork) lookup.findConstructor(lookup.lookupClass(),
+                    MethodType.methodType(void.class)).invoke();
+        } catch (Throwable t) {
+            throw new IllegalStateException("could not define a compiled network", t);
+        }
+        verify(compiledNetwork, new Interpreted(numWires, tops, bottoms));
+        return compiledNetwork;
+    }
+
+    /**
+     * Checks that a compiled network gives the same outputs as the interpreter on the first,
+     * last and evenly spaced blocks of inputs in between, both bit-sliced and packed.
+     *
+     * @param compiledNetwork the compiled network
+     * @param interpreted the same network, interpreted
+     * @throws IllegalStateException if any output differs
+     */
+    static void verify(CompiledNetwork compiledNetwork, CompiledNetwork interpreted) {
+        int numWires = interpreted.numWires();
+        long numBlocks = BitSlicedEvaluator.numBlocks(numWires);
+        long[] expected = new long[numWires];
+        long[] actual = new long[numWires];
+        for (int i = 0; i < Math.min(VERIFIED_BLOCKS, numBlocks); i++) {
+            long block = VERIFIED_BLOCKS >= numBlocks ? i : i * (numBlocks - 1) / (VERIFIED_BLOCKS - 1);
+            BitSlicedEvaluator.loadBlock(expected, block);
+            BitSlicedEvaluator.loadBlock(actual, block);
+            interpreted.applyComparators(expected);
+            compiledNetwork.applyComparators(actual);
+            if (!Arrays.equals(expected, actual))
+                throw new IllegalStateException("compiled network disagrees with the interpreter " +
+                        "on block " + block);
+
+            long first = block * 64;
+            for (long input = first; input < Math.min(first + 64, 1L << numWires); input++)
+                if (compiledNetwork.operateOnOneBinary(input) != interpreted.operateOnOneBinary(input))
+                    throw new IllegalStateException("compiled network disagrees with the interpreter " +
+                            "on input " + input);
+        }
+    }
+
+    /**
+     * Writes the class file of a CompiledNetwork for the given comparators.
+     *
+     * @param numWires the number of wires in the network
+     * @param tops the top wire index of each comparator
+     * @param bottoms the bottom wire index of each comparator
+     * @return the bytes of the class file
+     */
+    static byte[] generate(int numWires, int[] tops, int[] bottoms) {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(CLASS_NAME);
+        int superClass = pool.classRef("java/lang/Object");
+        int iface = pool.classRef(INTERFACE_NAME);
+        int objectInit = pool.methodRef(superClass, "<init>", "()V");
+        int code = pool.utf8("Code");
+
+        Method init = new Method(pool, "<init>", "()V", 1, 1);
+        init.op(0x2a).op(0xb7).u2(objectInit).op(0xb1);            // aload_0, invokespecial, return
+
+        Method wires = new Method(pool, "numWires", "()I", 1, 1);
+        wires.pushInt(numWires).op(0xac);                           // ireturn
+
+        // locals: 0 this, 1-2 v, 3-4 x
+        Method packed = new Method(pool, "operateOnOneBinary", "(J)J", 8, 5);
+        int notMask = pool.longConstant(-1L);
+        for (int i = 0; i < tops.length; i++) {
+            if (tops[i] == bottoms[i])
+                continue;
+            int top = Math.min(tops[i], bottoms[i]);
+            int bottom = Math.max(tops[i], bottoms[i]);
+            int d = bottom - top;
+            int mask = pool.longConstant(1L << (numWires - 1 - bottom));
+
+            packed.op(0x1f).pushInt(d).op(0x7d);                    // v >>> d
+            packed.op(0x1f).op(0x14).u2(notMask).op(0x83).op(0x7f); // & (v ^ -1)
+            packed.op(0x14).u2(mask).op(0x7f).op(0x42);             // & mask, store x
+            packed.op(0x1f).op(0x21).op(0x21).pushInt(d).op(0x79);  // v, x, x << d
+            packed.op(0x81).op(0x83).op(0x40);                      // v ^= x | (x << d)
+        }
+        packed.op(0x1f).op(0xad);                                   // lreturn v
+
+        // locals: 0 this, 1 wires, 2-3 top, 4-5 bottom
+        Method sliced = new Method(pool, "applyComparators", "([J)V", 8, 6);
+        for (int i = 0; i < tops.length; i++) {
+            if (tops[i] == bottoms[i])
+                continue;
+            sliced.op(0x2b).pushInt(tops[i]).op(0x2f).op(0x41);                       // top = wires[t]
+            sliced.op(0x2b).pushInt(bottoms[i]).op(0x2f).op(0x37).u1(4);              // bottom = wires[b]
+            sliced.op(0x2b).pushInt(tops[i]).op(0x20).op(0x16).u1(4).op(0x7f).op(0x50);    // wires[t] = top & bottom
+            sliced.op(0x2b).pushInt(bottoms[i]).op(0x20).op(0x16).u1(4).op(0x81).op(0x50); // wires[b] = top | bottom
+        }
+        sliced.op(0xb1);                                            // return
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(61);                                     // Java 17
+            pool.write(out);
+            out.writeShort(0x0001 | 0x0010 | 0x0020);               // public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(iface);
+            out.writeShort(0);                                      // no fields
+            out.writeShort(4);
+            for (Method method : new Method[]{init, wires, packed, sliced})
+                method.write(out, code);
+            out.writeShort(0);                                      // no attributes
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The constant pool of a generated class, with every entry added once.
+     */
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<Object, Integer> indices = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value) {
+            return add("utf8:" + value, 1, () -> {
+                out.writeByte(1);
+                out.writeUTF(value);
+            });
+        }
+
+        int classRef(String name) {
+            int nameIndex = utf8(name);
+            return add("class:" + name, 1, () -> {
+                out.writeByte(7);
+                out.writeShort(nameIndex);
+            });
+        }
+
+        int methodRef(int owner, String name, String descriptor) {
+            int nameIndex = utf8(name);
+            int typeIndex = utf8(descriptor);
+            int nameAndType = add("nameAndType:" + name + descriptor, 1, () -> {
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(typeIndex);
+            });
+            return add("method:" + owner + "." + name + descriptor, 1, () -> {
+                out.writeByte(10);
+                out.writeShort(owner);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        int longConstant(long value) {
+            // a long takes up two entries of the pool
+            return add(value, 2, () -> {
+                out.writeByte(5);
+                out.writeLong(value);
+            });
+        }
+
+        /**
+         * @param key identifies the entry, so that it is only added once
+         * @param slots the number of pool entries it takes up
+         * @param writer writes the entry
+         * @return the index of the entry
+         */
+        private int add(Object key, int slots, EntryWriter writer) {
+            Integer index = indices.get(key);
+            if (index != null)
+                return index;
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            indices.put(key, count);
+            count += slots;
+            return count - slots;
+        }
+
+        void write(DataOutputStream to) throws IOException {
+            to.writeShort(count);
+            bytes.writeTo(to);
+        }
+
+        private interface EntryWriter {
+            void write() throws IOException;
+        }
+    }
+
+    /**
+     * The code of one generated method.
+     */
+    private static final class Method {
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private final int name;
+        private final int descriptor;
+        private final int maxStack;
+        private final int maxLocals;
+
+        Method(ConstantPool pool, String name, String descriptor, int maxStack, int maxLocals) {
+            this.name = pool.utf8(name);
+            this.descriptor = pool.utf8(descriptor);
+            this.maxStack = maxStack;
+            this.maxLocals = maxLocals;
+        }
+
+        Method op(int opcode) {
+            code.write(opcode);
+            return this;
+        }
+
+        Method u1(int value) {
+            code.write(value);
+            return this;
+        }
+
+        Method u2(int value) {
+            code.write(value >>> 8);
+            code.write(value);
+            return this;
+        }
+
+        Method pushInt(int value) {
+            if (value <= 5)
+                return op(0x03 + value);                            // iconst_<value>
+            if (value <= Byte.MAX_VALUE)
+                return op(0x10).u1(value);                          // bipush
+            return op(0x11).u2(value);                              // sipush
+        }
+
+        void write(DataOutputStream out, int codeAttribute) throws IOException {
+            out.writeShort(0x0001);                                 // public
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(codeAttribute);
+            out.writeInt(12 + code.size());
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.size());
+            code.writeTo(out);
+            out.writeShort(0);                                      // no exception handlers
+            out.writeShort(0);                                      // no attributes
+        }
+    }
+
+    /**
+     * The comparators of a network, compared by value.
+     */
+    private static final class Key {
+        private final int numWires;
+        private final int[] tops;
+        private final int[] bottoms;
+        private final int hash;
+
+        Key(ComparisonNetwork network) {
+            this.numWires = network.numWires();
+            this.tops = BitSlicedEvaluator.topWires(network);
+            this.bottoms = BitSlicedEvaluator.bottomWires(network);
+            this.hash = 31 * (31 * numWires + Arrays.hashCode(tops)) + Arrays.hashCode(bottoms);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return hash == key.hash && numWires == key.numWires &&
+                    Arrays.equals(tops, key.tops) && Arrays.equals(bottoms, key.bottoms);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * How often a network has been asked for, and its compiled form once it has one.
+     */
+    private static final class Entry {
+        private int requests;
+        private CompiledNetwork network;
+    }
+
+    /**
+     * A network that has not been compiled, evaluated by looping over its wire indices.
+     */
+    private static final class Interpreted implements CompiledNetwork {
+        private final int numWires;
+        private final int[] tops;
+        private final int[] bottoms;
+
+        Interpreted(int numWires, int[] tops, int[] bottoms) {
+            this.numWires = numWires;
+            this.tops = tops;
+            this.bottoms = bottoms;
+        }
+
+        @Override
+        public int numWires() {
+            return numWires;
+        }
+
+        @Override
+        public long operateOnOneBinary(long packedSequence) {
+            for (int i = 0; i < tops.length; i++) {
+                long topBit = 1L << (numWires - 1 - tops[i]);
+                long bottomBit = 1L << (numWires - 1 - bottoms[i]);
+                if ((packedSequence & topBit) != 0 && (packedSequence & bottomBit) == 0)
+                    packedSequence ^= topBit | bottomBit;
+            }
+            return packedSequence;
+        }
+
+        @Override
+        public void applyComparators(long[] wires) {
+            BitSlicedEvaluator.applyComparators(wires, tops, bottoms);
+        }
+    }
+}
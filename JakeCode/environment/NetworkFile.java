@@ -0,0 +1,477 @@
+package environment;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Files of comparison networks, so that candidates found by one run can be kept, scanned and
+ * re-scored by later ones.
+ *
+ * A binary network file holds a small header (magic and version) followed by any number of
+ * records, one per network. A record is the number of wires (one byte), a flags byte, the number
+ * of comparators (an unsigned short), the fitness (an int, only if the flags say there is one),
+ * and then one byte for each of the top and bottom wire of every comparator. A 60-comparator
+ * network with its fitness takes 128 bytes. Files can be appended to, so a search can write its
+ * candidates as it finds them.
+ *
+ * Reading maps the file read-only, a window at a time, and streams its records. Records whose
+ * fitness does not pass a filter are skipped without building a network, so a file of millions
+ * of candidates can be searched for, e.g., every network with fitness below 40.
+ *
+ * The text format is the one ComparisonNetwork.toString() prints, one "Top: x\tBot: y" line per
+ * comparator, with each network preceded by a "Wires: n" line and followed by a blank line.
+ */
+public final class NetworkFile {
+
+    /**
+     * The fitness of a record that was written without one.
+     */
+    public static final int NO_FITNESS = -1;
+
+    // "SNNF", for sorting network network file
+    private static final int MAGIC = 0x534E4E46;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4;
+
+    // set in a record's flags byte if it holds a fitness
+    private static final int HAS_FITNESS = 1;
+
+    // numWires, flags, size, fitness
+    private static final int RECORD_HEADER_BYTES = 1 + 1 + 2 + 4;
+    private static final int MAX_COMPARATORS = 0xFFFF;
+    private static final int MAX_RECORD_BYTES = RECORD_HEADER_BYTES + 2 * MAX_COMPARATORS;
+
+    // the most bytes of a file mapped at once
+    private static final long WINDOW_BYTES = 1L << 30;
+
+    private static final String WIRES_PREFIX = "Wires:";
+
+    private NetworkFile() {
+    }
+
+    /**
+     * Opens a network file for writing, creating it if it does not exist.
+     *
+     * @param file the file to write
+     * @param append whether to add to the records already in the file rather than replace them
+     * @return a writer of records to the file
+     * @throws IOException if the file cannot be opened, or is not a network file
+     */
+    public static Writer newWriter(Path file, boolean append) throws IOException {
+        boolean writeHeader = !append || !Files.exists(file) || Files.size(file) == 0;
+        if (!writeHeader)
+            checkHeader(file);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)));
+        if (writeHeader) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+        return new Writer(out);
+    }
+
+    /**
+     * Streams every record of a network file. The stream must be closed.
+     *
+     * @param file the file to read
+     * @return the records of the file, in order
+     * @throws IOException if the file cannot be read, or is not a network file
+     */
+    public static Stream<Record> stream(Path file) throws IOException {
+        return stream(file, fitness -> true);
+    }
+
+    /**
+     * Streams the records of a network file whose fitness passes a filter. The other records are
+     * skipped without building their networks. A record written without a fitness is tested as
+     * NO_FITNESS. The stream must be closed.
+     *
+     * @param file the file to read
+     * @param fitnessFilter tests the stored fitness of each record
+     * @return the records of the file that pass the filter, in order
+     * @throws IOException if the file cannot be read, or is not a network file
+     */
+    public static Stream<Record> stream(Path file, IntPredicate fitnessFilter) throws IOException {
+        RecordSpliterator records = new RecordSpliterator(file, fitnessFilter);
+        return StreamSupport.stream(records, false).onClose(records::close);
+    }
+
+    /**
+     * Re-scores the records of a network file whose stored fitness passes a filter, writing them
+     * with their new fitness to another file. The networks are scored in parallel but written in
+     * their original order.
+     *
+     * @param source the file to read
+     * @param target the file to write, which must not be the source
+     * @param fitnessFilter tests the stored fitness of each record
+     * @param fitness computes the new fitness of a network
+     * @return the number of records re-scored
+     * @throws IOException if either file cannot be used
+     */
+    public static long rescore(Path source, Path target, IntPredicate fitnessFilter,
+                               ToIntFunction<ComparisonNetwork> fitness) throws IOException {
+        long[] count = new long[1];
+        try (Stream<Record> records = stream(source, fitnessFilter); Writer writer = newWriter(target, false)) {
+            records.parallel()
+                    .map(r -> new Record(r.getNetwork(), fitness.applyAsInt(r.getNetwork())))
+                    .forEachOrdered(r -> {
+                        writer.writeUnchecked(r);
+                        count[0]++;
+                    });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count[0];
+    }
+
+    /**
+     * Writes one record.
+     *
+     * @param out the output to write to
+     * @param network the network to write
+     * @param fitness the fitness of the network, or NO_FITNESS
+     * @throws IOException if the write fails
+     */
+    public static void writeRecord(DataOutput out, ComparisonNetwork network, int fitness)
+            throws IOException {
+        if (network.numWires() > 0xFF || network.size() > MAX_COMPARATORS)
+            throw new IllegalArgumentException("networks of " + network.numWires() + " wires and "
+                    + network.size() + " comparators cannot be written");
+        out.writeByte(network.numWires());
+        out.writeByte(fitness == NO_FITNESS ? 0 : HAS_FITNESS);
+        out.writeShort(network.size());
+        if (fitness != NO_FITNESS)
+            out.writeInt(fitness);
+        for (Comparator c : network.getNetwork()) {
+            out.writeByte(c.getTopWire());
+            out.writeByte(c.getBottomWire());
+        }
+    }
+
+    /**
+     * Reads one record.
+     *
+     * @param in the input to read from
+     * @return the record read
+     * @throws IOException if the read fails
+     */
+    public static Record readRecord(DataInput in) throws IOException {
+        int numWires = in.readUnsignedByte();
+        int flags = in.readUnsignedByte();
+        int size = in.readUnsignedShort();
+        int fitness = (flags & HAS_FITNESS) != 0 ? in.readInt() : NO_FITNESS;
+        ArrayList<Comparator> comparators = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            comparators.add(new Comparator(in.readUnsignedByte(), in.readUnsignedByte()));
+        return new Record(new ComparisonNetwork(numWires, comparators), fitness);
+    }
+
+    /**
+     * Writes networks in the text format.
+     *
+     * @param file the file to write
+     * @param networks the networks to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeText(Path file, Iterable<ComparisonNetwork> networks) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            for (ComparisonNetwork network : networks) {
+                out.write(WIRES_PREFIX + " " + network.numWires());
+                out.newLine();
+                for (Comparator c : network.getNetwork()) {
+                    out.write(c.toString());
+                    out.newLine();
+                }
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Reads networks in the text format. A network without a "Wires: n" line is given as many
+     * wires as it needs, one more than the highest wire any of its comparators uses.
+     *
+     * @param file the file to read
+     * @return the networks in the file, in order
+     * @throws IOException if the file cannot be read or is not in the text format
+     */
+    public static List<ComparisonNetwork> readText(Path file) throws IOException {
+        List<ComparisonNetwork> networks = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            int numWires = -1;
+            ArrayList<Comparator> comparators = new ArrayList<>();
+            int lineNumber = 0;
+            for (String line = in.readLine(); ; line = in.readLine()) {
+                lineNumber++;
+                String trimmed = line == null ? "" : line.trim();
+                if (trimmed.isEmpty()) {
+                    if (numWires >= 0 || !comparators.isEmpty())
+                        networks.add(new ComparisonNetwork(
+                                numWires >= 0 ? numWires : wiresUsed(comparators), comparators));
+                    numWires = -1;
+                    comparators = new ArrayList<>();
+                    if (line == null)
+                        return networks;
+                } else if (trimmed.startsWith(WIRES_PREFIX)) {
+                    numWires = parseInt(trimmed.substring(WIRES_PREFIX.length()), file, lineNumber);
+                } else {
+                    comparators.add(parseComparator(trimmed, file, lineNumber));
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses a comparator printed by Comparator.toString(), "Top: x\tBot: y".
+     *
+     * @param line the printed comparator
+     * @return the comparator
+     * @throws IllegalArgumentException if the line is not a printed comparator
+     */
+    public static Comparator parseComparator(String line) {
+        String[] parts = line.trim().split("\\s+");
+        if (parts.length != 4 || !parts[0].equals("Top:") || !parts[2].equals("Bot:"))
+            throw new IllegalArgumentException("not a comparator: " + line);
+        return new Comparator(Integer.parseInt(parts[1]), Integer.parseInt(parts[3]));
+    }
+
+    private static Comparator parseComparator(String line, Path file, int lineNumber) throws IOException {
+        try {
+            return parseComparator(line);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static int parseInt(String value, Path file, int lineNumber) throws IOException {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException(file + ":" + lineNumber + ": not a number of wires: " + value, e);
+        }
+    }
+
+    /**
+     * @param comparators a list of comparators
+     * @return one more than the highest wire any of the comparators uses
+     */
+    private static int wiresUsed(List<Comparator> comparators) {
+        int numWires = 0;
+        for (Comparator c : comparators)
+            numWires = Math.max(numWires, Math.max(c.getTopWire(), c.getBottomWire()) + 1);
+        return numWires;
+    }
+
+    /**
+     * @param file a file that should be a network file
+     * @throws IOException if it is not
+     */
+    private static void checkHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES)
+                throw new IOException(file + " is not a network file");
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException(file + " is not a network file");
+        }
+    }
+
+    /**
+     * A network read from or written to a network file, with its fitness if it has one.
+     */
+    public static final class Record {
+
+        private final ComparisonNetwork network;
+        private final int fitness;
+
+        /**
+         * @param network the network
+         * @param fitness the fitness of the network, or NO_FITNESS
+         */
+        public Record(ComparisonNetwork network, int fitness) {
+            this.network = network;
+            this.fitness = fitness;
+        }
+
+        /**
+         * @return the network
+         */
+        public ComparisonNetwork getNetwork() { return network; }
+
+        /**
+         * @return the fitness of the network, or NO_FITNESS if it has none
+         */
+        public int getFitness() { return fitness; }
+
+        /**
+         * @return whether the record holds a fitness
+         */
+        public boolean hasFitness() { return fitness != NO_FITNESS; }
+    }
+
+    /**
+     * Appends records to a network file.
+     */
+    public static final class Writer implements Closeable {
+
+        private final DataOutputStream out;
+
+        private Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * @param network the network to write, without a fitness
+         * @throws IOException if the write fails
+         */
+        public void write(ComparisonNetwork network) throws IOException {
+            writeRecord(out, network, NO_FITNESS);
+        }
+
+        /**
+         * @param network the network to write
+         * @param fitness the fitness of the network
+         * @throws IOException if the write fails
+         */
+        public void write(ComparisonNetwork network, int fitness) throws IOException {
+            writeRecord(out, network, fitness);
+        }
+
+        /**
+         * @param record the record to write
+         * @throws IOException if the write fails
+         */
+        public void write(Record record) throws IOException {
+            writeRecord(out, record.getNetwork(), record.getFitness());
+        }
+
+        private void writeUnchecked(Record record) {
+            try {
+                write(record);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the records of a mapped network file in order, mapping the next window of the file
+     * whenever a record might not fit in what is left of the current one.
+     */
+    private static final class RecordSpliterator extends Spliterators.AbstractSpliterator<Record> {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final long fileSize;
+        private final IntPredicate fitnessFilter;
+
+        // the mapped window and the offset in the file it starts at
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        RecordSpliterator(Path file, IntPredicate fitnessFilter) throws IOException {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.fileSize = channel.size();
+            this.fitnessFilter = fitnessFilter;
+            try {
+                map(0);
+                if (window.remaining() < HEADER_BYTES || window.getInt() != MAGIC || window.getInt() != VERSION)
+                    throw new IOException(file + " is not a network file");
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Record> action) {
+            try {
+                while (windowStart + window.position() < fileSize) {
+                    ensureRemaining(MAX_RECORD_BYTES);
+                    int recordStart = window.position();
+                    int numWires = window.get() & 0xFF;
+                    int flags = window.get() & 0xFF;
+                    int size = window.getShort() & 0xFFFF;
+                    int fitness = (flags & HAS_FITNESS) != 0 ? window.getInt() : NO_FITNESS;
+                    if (window.remaining() < 2 * size)
+                        throw new IOException(file + " ends in the middle of a record at "
+                                + (windowStart + recordStart));
+
+                    if (!fitnessFilter.test(fitness)) {
+                        window.position(window.position() + 2 * size);
+                        continue;
+                    }
+                    ArrayList<Comparator> comparators = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++)
+                        comparators.add(new Comparator(window.get() & 0xFF, window.get() & 0xFF));
+                    action.accept(new Record(new ComparisonNetwork(numWires, comparators), fitness));
+                    return true;
+                }
+                return false;
+            } catch (BufferUnderflowException e) {
+                throw new UncheckedIOException(new IOException(file + " ends in the middle of a record", e));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Maps the next window if fewer than the given number of bytes are left in the current
+         * one and the file has more.
+         */
+        private void ensureRemaining(int bytes) throws IOException {
+            long position = windowStart + window.position();
+            if (window.remaining() < bytes && windowStart + window.limit() < fileSize)
+                map(position);
+            if (window.remaining() < RECORD_HEADER_BYTES - 4)
+                throw new IOException(file + " ends in the middle of a record at " + position);
+        }
+
+        /**
+         * @param start the offset in the file to map from
+         */
+        private void map(long start) throws IOException {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_BYTES, fileSize - start));
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package environment;
+
+import java.util.Arrays;
+
+/**
+ * A canonical fingerprint of a comparison network. Two networks that differ only in ways that
+ * cannot change any output have equal fingerprints, so a fitness computed for one can be reused
+ * for the other.
+ *
+ * The canonical form is the network's LayeredNetwork:
+ *  - degenerate comparators (top wire == bottom wire), which never swap, are dropped;
+ *  - a comparator that repeats the last comparator on both of its wires is dropped, since those
+ *    two wires are already in order;
+ *  - every other comparator is placed in the earliest layer after the last comparator on either
+ *    of its wires, and each layer is sorted by (top, bottom). Comparators in a layer share no
+ *    wires, so this removes any reordering of independent comparators.
+ *
+ * Comparator already stores min/max wires as top/bottom, so (i, j) and (j, i) are the same.
+ */
+public final class NetworkFingerprint {
+
+    private final int numWires;
+
+    // the canonical comparators, each encoded as (layer << 16) | (top << 8) | bottom, sorted
+    private final int[] comparators;
+
+    // a 64-bit hash of the canonical form
+    private final long hash;
+
+    private NetworkFingerprint(int numWires, int[] comparators) {
+        this.numWires = numWires;
+        this.comparators = comparators;
+        long h = 0xcbf29ce484222325L;
+        h = (h ^ numWires) * 0x100000001b3L;
+        for (int c : comparators)
+            h = (h ^ c) * 0x100000001b3L;
+        this.hash = h;
+    }
+
+    /**
+     * Computes the canonical fingerprint of a network.
+     *
+     * @param network the network to fingerprint
+     * @return the fingerprint of the network
+     */
+    public static NetworkFingerprint of(ComparisonNetwork network) {
+        return of(LayeredNetwork.of(network));
+    }
+
+    /**
+     * Computes the fingerprint of a layered network, whose layers are already canonical.
+     *
+     * @param network the layered network to fingerprint
+     * @return the fingerprint of the network
+     */
+    public static NetworkFingerprint of(LayeredNetwork network) {
+        int[] comparators = new int[network.size()];
+        int count = 0;
+        for (int layer = 0; layer < network.depth(); layer++)
+            for (Comparator c : network.getLayer(layer))
+                comparators[count++] =
+                        ((layer + 1) << 16) | (c.getTopWire() << 8) | c.getBottomWire();
+        return new NetworkFingerprint(network.numWires(), comparators);
+    }
+
+    /**
+     * @return a 64-bit hash of the canonical form
+     */
+    public long hash64() {
+        return hash;
+    }
+
+    /**
+     * @return the number of comparators left in the canonical form
+     */
+    public int canonicalSize() {
+        return comparators.length;
+    }
+
+    /**
+     * Overridden equals method for use with HashMap.
+     *
+     * @return true if both fingerprints have the same canonical form
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof NetworkFingerprint))
+            return false;
+        NetworkFingerprint fingerprint = (NetworkFingerprint) o;
+        return hash == fingerprint.hash && numWires == fingerprint.numWires &&
+                Arrays.equals(comparators, fingerprint.comparators);
+    }
+
+    /**
+     * Overridden hashCode() method for use with HashMap.
+     *
+     * @return a hashed integer for this NetworkFingerprint object
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+
+    /**
+     * @return the 64-bit hash as hex digits
+     */
+    @Override
+    public String toString() {
+        return String.format("%016x", hash);
+    }
+}
@@ -1,7 +1,12 @@
 package environment;
 
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.PrimitiveIterator;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.BiFunction;
 
 /**
  * A class for managing many different kinds of useful utilities that one can use in a
@@ -12,6 +17,9 @@ import java.util.Set;
  */
 public class NetworkUtilities {
 
+    // the probability that copyMutate(network, rand, deadIndices) replaces a dead comparator
+    public static final double DEAD_FIRST_PROBABILITY = 0.5;
+
     private static Random rand = new Random();
 
     /**
@@ -24,13 +32,37 @@ public class NetworkUtilities {
         return green32.operateOnAllBinary();
     }
 
+    /**
+     * Returns Green32's 151 unsorted outputs from the given store, running Green32 and storing
+     * them first if this is the first time they are needed.
+     *
+     * @param store the store to keep the outputs in
+     * @return a read-only buffer of Green32's packed unsorted outputs
+     * @throws IOException if the store cannot be read or written
+     */
+    public static LongBuffer getGreen32Outputs(OutputSetStore store) throws IOException {
+        return store.computeIfAbsent(createGreen32());
+    }
+
     /**
      * Creates a ComparisonNetwork containing randomly assigned comparators.
      *
      * @return a random ComparisonNetwork object
      */
     public static ComparisonNetwork createRandomNetwork(int numWires, int numComparators) {
+        return createRandomNetwork(numWires, numComparators, rand);
+    }
 
+    /**
+     * Creates a ComparisonNetwork containing randomly assigned comparators, drawing from the
+     * given Random so that parallel searches can each use their own.
+     *
+     * @param numWires the number of wires in the network
+     * @param numComparators the number of comparators in the network
+     * @param rand the Random to draw comparators from
+     * @return a random ComparisonNetwork object
+     */
+    public static ComparisonNetwork createRandomNetwork(int numWires, int numComparators, Random rand) {
         ComparisonNetwork randomNetwork = new ComparisonNetwork(numWires);
         for (int i = 0; i < numComparators; i++) {
             int randI = rand.nextInt(i + 1);
@@ -41,6 +73,24 @@ public class NetworkUtilities {
         return randomNetwork;
     }
 
+    // the size of the smallest known sorting network on n wires, indexed by n
+    private static final int[] BEST_KNOWN_SIZES =
+            {0, 0, 1, 3, 5, 9, 12, 16, 19, 25, 29, 35, 39, 45, 51, 56, 60, 71};
+
+    /**
+     * Returns the size of the smallest known sorting network on the given number of wires, the
+     * size the experiments give their random networks.
+     *
+     * @param numWires the number of wires
+     * @return the number of comparators in the smallest known sorting network
+     * @throws IllegalArgumentException if no size is known for that many wires
+     */
+    public static int bestKnownSize(int numWires) {
+        if (numWires < 0 || numWires >= BEST_KNOWN_SIZES.length)
+            throw new IllegalArgumentException("no best known size for " + numWires + " wires");
+        return BEST_KNOWN_SIZES[numWires];
+    }
+
     /**
      * A method that mutates a network for hill-climbing algorithms.
      *
@@ -49,10 +99,27 @@ public class NetworkUtilities {
      * wire indices, and replacing the previously chosen existing comparator with the newly
      * created comparator.
      *
+     * The new network shares its list of comparators with the parameter network, so the
+     * parameter network is changed as well. Searches that keep the parent (every search in this
+     * package) must use copyMutate() instead.
+     *
      * @param networkToMutate the network to mutate
      * @return a new network representing the mutation performed upon the parameter network
      */
     public static ComparisonNetwork hillClimbMutate(ComparisonNetwork networkToMutate) {
+        return hillClimbMutate(networkToMutate, rand);
+    }
+
+    /**
+     * A method that mutates a network for hill-climbing algorithms, drawing from the given
+     * Random so that parallel searches can each use their own. Like hillClimbMutate(network),
+     * this changes the parameter network as well; see copyMutate().
+     *
+     * @param networkToMutate the network to mutate
+     * @param rand the Random to draw the mutation from
+     * @return a new network representing the mutation performed upon the parameter network
+     */
+    public static ComparisonNetwork hillClimbMutate(ComparisonNetwork networkToMutate, Random rand) {
         ComparisonNetwork newNetwork = new ComparisonNetwork(networkToMutate.numWires(), networkToMutate.getNetwork());
 
         // randomize indices
@@ -65,6 +132,128 @@ public class NetworkUtilities {
         return newNetwork;
     }
 
+    /**
+     * A method that mutates a copy of a network, the same way hillClimbMutate() does. Unlike
+     * hillClimbMutate(), the mutant has its own list of comparators, so the parent is left as it
+     * was. Every search that keeps the parent needs this: hill climbing keeps the best network
+     * and a genetic algorithm keeps the population.
+     *
+     * @param networkToMutate the network to mutate
+     * @param rand the Random to draw the mutation from
+     * @return a new network representing the mutation performed upon a copy of the network
+     */
+    public static ComparisonNetwork copyMutate(ComparisonNetwork networkToMutate, Random rand) {
+        ComparisonNetwork newNetwork = new ComparisonNetwork(networkToMutate.numWires(),
+                new ArrayList<>(networkToMutate.getNetwork()));
+        int randComparatorIndex = rand.nextInt(networkToMutate.size());
+        int topIndex = rand.nextInt(networkToMutate.numWires());
+        int bottomIndex = rand.nextInt(networkToMutate.numWires());
+        newNetwork.replace(randComparatorIndex, new Comparator(topIndex, bottomIndex));
+        return newNetwork;
+    }
+
+    /**
+     * A method that mutates a copy of a network, preferring to replace a comparator that never
+     * swaps (see RedundancyAnalysis). Replacing a dead comparator cannot lose any sorting work,
+     * so these mutations are accepted far more often. With probability DEAD_FIRST_PROBABILITY
+     * one of the dead comparators is replaced, and otherwise any comparator may be, so that a
+     * network whose dead comparators cannot help is never stuck. Like copyMutate(network, rand),
+     * the parent is left as it was.
+     *
+     * @param networkToMutate the network to mutate
+     * @param rand the Random to draw the mutation from
+     * @param deadIndices the indices of the comparators in the network that never swap
+     * @return a new network representing the mutation performed upon a copy of the network
+     */
+    public static ComparisonNetwork copyMutate(ComparisonNetwork networkToMutate, Random rand,
+                                               int[] deadIndices) {
+        if (deadIndices.length == 0 || rand.nextDouble() >= DEAD_FIRST_PROBABILITY)
+            return copyMutate(networkToMutate, rand);
+
+        ComparisonNetwork newNetwork = new ComparisonNetwork(networkToMutate.numWires(),
+                new ArrayList<>(networkToMutate.getNetwork()));
+
+        // randomize indices, drawing the comparator to replace from the dead ones
+        int randComparatorIndex = deadIndices[rand.nextInt(deadIndices.length)];
+        int topIndex = rand.nextInt(networkToMutate.numWires());
+        int bottomIndex = rand.nextInt(networkToMutate.numWires());
+        newNetwork.replace(randComparatorIndex, new Comparator(topIndex, bottomIndex));
+        return newNetwork;
+    }
+
+    /**
+     * Creates a mutator for HillClimbingEngine that prefers to replace dead comparators, as
+     * copyMutate(network, rand, deadIndices) does. Each thread analyses a parent the first time
+     * it mutates it and keeps the dead indices until it is given a different parent, so a hill
+     * climb only pays for one analysis (a full evaluation) per kept mutation.
+     *
+     * @return a mutator that leaves its argument as it was
+     */
+    public static BiFunction<ComparisonNetwork, Random, ComparisonNetwork> deadFirstMutator() {
+        ThreadLocal<DeadComparators> last = new ThreadLocal<>();
+        return (network, rand) -> {
+            DeadComparators dead = last.get();
+            if (dead == null || dead.network != network) {
+                dead = new DeadComparators(network, RedundancyAnalysis.of(network).getDeadIndices());
+                last.set(dead);
+            }
+            return copyMutate(network, rand, dead.indices);
+        };
+    }
+
+    /**
+     * A crossover that splices the comparators of the first network before a random cut point
+     * onto the comparators of the second network from the same point on. With parents of the
+     * same size the child has that size too.
+     *
+     * @param first the parent the prefix is taken from
+     * @param second the parent the suffix is taken from
+     * @param rand the Random to draw the cut point from
+     * @return a new network made of the prefix of the first and the suffix of the second
+     */
+    public static ComparisonNetwork spliceCrossover(ComparisonNetwork first, ComparisonNetwork second,
+                                                    Random rand) {
+        int cut = rand.nextInt(Math.min(first.size(), second.size()) + 1);
+        ArrayList<Comparator> comparators = new ArrayList<>(second.size());
+        comparators.addAll(first.getNetwork().subList(0, cut));
+        comparators.addAll(second.getNetwork().subList(cut, second.size()));
+        return new ComparisonNetwork(first.numWires(), comparators);
+    }
+
+    /**
+     * A crossover that replaces a random range of layers (see LayeredNetwork) of the first
+     * network with the same layers of the second. Layers are where comparators on disjoint wires
+     * work together, so this keeps such groups intact where splicing would cut through them.
+     * The child is then brought back to the first network's size, by dropping comparators at
+     * random or inserting random ones, as createRandomNetwork() does.
+     *
+     * @param first the parent the outer layers are taken from
+     * @param second the parent the exchanged layers are taken from
+     * @param rand the Random to draw the layers and the repairs from
+     * @return a new network with the size of the first network
+     */
+    public static ComparisonNetwork layerCrossover(ComparisonNetwork first, ComparisonNetwork second,
+                                                   Random rand) {
+        LayeredNetwork firstLayers = LayeredNetwork.of(first);
+        LayeredNetwork secondLayers = LayeredNetwork.of(second);
+        int depth = Math.min(firstLayers.depth(), secondLayers.depth());
+        int from = rand.nextInt(depth + 1);
+        int to = from + rand.nextInt(depth - from + 1);
+
+        ArrayList<Comparator> comparators = new ArrayList<>(first.size());
+        for (int layer = 0; layer < firstLayers.depth(); layer++)
+            comparators.addAll(layer >= from && layer < to
+                    ? secondLayers.getLayer(layer) : firstLayers.getLayer(layer));
+        while (comparators.size() > first.size())
+            comparators.remove(rand.nextInt(comparators.size()));
+
+        ComparisonNetwork child = new ComparisonNetwork(first.numWires(), comparators);
+        while (child.size() < first.size())
+            child.addComparator(rand.nextInt(child.size() + 1), rand.nextInt(first.numWires()),
+                    rand.nextInt(first.numWires()));
+        return child;
+    }
+
     /**
      * Prints all of the unsorted outputs for the Set of BinarySequences provided as the argument.
      * @param unsortedOutputs the Set of BinarySequence outputs that are unsorted
@@ -75,6 +264,18 @@ public class NetworkUtilities {
             System.out.println(++i + ".) " + seq);
     }
 
+    /**
+     * Prints all of the unsorted outputs in the OutputSet provided as the argument.
+     * @param unsortedOutputs the OutputSet of outputs that are unsorted
+     */
+    public static void printUnsortedOutputs(OutputSet unsortedOutputs) {
+        int i = 0;
+        PrimitiveIterator.OfLong it = unsortedOutputs.iterator();
+        while (it.hasNext())
+            System.out.println(++i + ".) " +
+                    new PackedBinarySequence(unsortedOutputs.numWires(), it.nextLong()));
+    }
+
     /**
      * Create and returns the first 32 comparisons of the Green sorting network.
      *
@@ -99,4 +300,18 @@ public class NetworkUtilities {
             green32.addComparator(i, i + 8);
         return green32;
     }
-}
\ No newline at end of file
+
+    /**
+     * The dead comparators of the network a thread last mutated with deadFirstMutator().
+     */
+    private static final class DeadComparators {
+
+        private final ComparisonNetwork network;
+        private final int[] indices;
+
+        DeadComparators(ComparisonNetwork network, int[] indices) {
+            this.network = network;
+            this.indices = indices;
+        }
+    }
+}
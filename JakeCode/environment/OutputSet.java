@@ -0,0 +1,323 @@
+package environment;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of binary outputs on a fixed number of wires, stored as a bitmap with one bit for each
+ * of the 2^numWires possible outputs. Bit x is set when the output whose packed value is x (see
+ * PackedBinarySequence) is in the set.
+ *
+ * This replaces a HashSet of BinarySequence objects for fitness evaluations: the whole set for
+ * 16 wires takes 8 KB, adding an output is a single OR, and the size is tracked as outputs are
+ * added so reading it is free.
+ */
+public class OutputSet {
+
+    // the largest number of wires an OutputSet supports (a 2^30 bit bitmap is 128 MB)
+    public static final int MAX_WIRES = 30;
+
+    private final int numWires;
+
+    // bit x of the bitmap is set if output x is in this set
+    private final long[] bitmap;
+
+    // the number of outputs in this set
+    private int size;
+
+    /**
+     * Creates an empty set of outputs.
+     *
+     * @param numWires the number of wires the outputs are on
+     */
+    public OutputSet(int numWires) {
+        if (numWires < 0 || numWires > MAX_WIRES)
+            throw new IllegalArgumentException("an OutputSet holds at most " + MAX_WIRES +
+                    " wires, not " + numWires);
+        this.numWires = numWires;
+        this.bitmap = new long[(int) Math.max(1, (1L << numWires) >>> 6)];
+    }
+
+    /**
+     * Creates a set holding the given BinarySequence outputs.
+     *
+     * @param numWires the number of wires the outputs are on
+     * @param outputs the outputs to add
+     */
+    public OutputSet(int numWires, Set<BinarySequence> outputs) {
+        this(numWires);
+        for (BinarySequence seq : outputs)
+            add(PackedBinarySequence.pack(seq.getBinarySequence()));
+    }
+
+    /**
+     * Adds an output to this set.
+     *
+     * @param output the packed output to add
+     * @return true if the output was not already in this set
+     */
+    public boolean add(long output) {
+        int word = (int) (output >>> 6);
+        long bit = 1L << output;
+        if ((bitmap[word] & bit) != 0)
+            return false;
+        bitmap[word] |= bit;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes an output from this set.
+     *
+     * @param output the packed output to remove
+     * @return true if the output was in this set
+     */
+    public boolean remove(long output) {
+        int word = (int) (output >>> 6);
+        long bit = 1L << output;
+        if ((bitmap[word] & bit) == 0)
+            return false;
+        bitmap[word] &= ~bit;
+        size--;
+        return true;
+    }
+
+    /**
+     * @param output a packed output
+     * @return true if the output is in this set
+     */
+    public boolean contains(long output) {
+        return (bitmap[(int) (output >>> 6)] & (1L << output)) != 0;
+    }
+
+    /**
+     * @return the number of outputs in this set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if this set holds no outputs
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of wires the outputs are on
+     */
+    public int numWires() {
+        return numWires;
+    }
+
+    /**
+     * Removes every output from this set.
+     */
+    public void clear() {
+        Arrays.fill(bitmap, 0);
+        size = 0;
+    }
+
+    /**
+     * Adds every output of another set to this one.
+     *
+     * @param other a set of outputs on the same number of wires
+     */
+    public void addAll(OutputSet other) {
+        checkWires(other);
+        for (int i = 0; i < bitmap.length; i++)
+            bitmap[i] |= other.bitmap[i];
+        size = cardinality();
+    }
+
+    /**
+     * Removes every output of another set from this one.
+     *
+     * @param other a set of outputs on the same number of wires
+     */
+    public void removeAll(OutputSet other) {
+        checkWires(other);
+        for (int i = 0; i < bitmap.length; i++)
+            bitmap[i] &= ~other.bitmap[i];
+        size = cardinality();
+    }
+
+    /**
+     * @param other a set of outputs on the same number of wires
+     * @return a new set holding the outputs of both sets
+     */
+    public OutputSet union(OutputSet other) {
+        OutputSet union = copy();
+        union.addAll(other);
+        return union;
+    }
+
+    /**
+     * @param other a set of outputs on the same number of wires
+     * @return a new set holding the outputs of this set that are not in the other set
+     */
+    public OutputSet difference(OutputSet other) {
+        OutputSet difference = copy();
+        difference.removeAll(other);
+        return difference;
+    }
+
+    /**
+     * @return a copy of this set
+     */
+    public OutputSet copy() {
+        OutputSet copy = new OutputSet(numWires);
+        System.arraycopy(bitmap, 0, copy.bitmap, 0, bitmap.length);
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * @return an iterator over the packed outputs in this set, in increasing order
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int word = 0;
+            private long remaining = bitmap[0];
+
+            @Override
+            public boolean hasNext() {
+                while (remaining == 0 && word < bitmap.length - 1)
+                    remaining = bitmap[++word];
+                return remaining != 0;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                long output = ((long) word << 6) | Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                return output;
+            }
+        };
+    }
+
+    /**
+     * @return a spliterator over the packed outputs in this set, in increasing order, which
+     * splits on word boundaries of the bitmap
+     */
+    public Spliterator.OfLong spliterator() {
+        return new BitmapSpliterator(0, bitmap.length);
+    }
+
+    /**
+     * @return the outputs in this set as BinarySequence objects
+     */
+    public Set<BinarySequence> toBinarySequences() {
+        Set<BinarySequence> outputs = new HashSet<>();
+        PrimitiveIterator.OfLong it = iterator();
+        while (it.hasNext())
+            outputs.add(new PackedBinarySequence(numWires, it.nextLong()).toBinarySequence());
+        return outputs;
+    }
+
+    /**
+     * A spliterator over the set bits of the words [word, end) of the bitmap.
+     */
+    private final class BitmapSpliterator implements Spliterator.OfLong {
+        private int word;
+        private final int end;
+        private long remaining;
+
+        private BitmapSpliterator(int word, int end) {
+            this.word = word;
+            this.end = end;
+            this.remaining = word < end ? bitmap[word] : 0;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            while (remaining == 0 && word < end - 1)
+                remaining = bitmap[++word];
+            if (remaining == 0)
+                return false;
+            action.accept(((long) word << 6) | Long.numberOfTrailingZeros(remaining));
+            remaining &= remaining - 1;
+            return true;
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            // only split off whole words that have not been started yet
+            int mid = (word + 1 + end) >>> 1;
+            if (mid <= word + 1 || mid >= end)
+                return null;
+            BitmapSpliterator prefix = new BitmapSpliterator(word, mid);
+            prefix.remaining = remaining;
+            word = mid;
+            remaining = bitmap[mid];
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (long) (end - word) << 6;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | SORTED | NONNULL;
+        }
+
+        @Override
+        public java.util.Comparator<? super Long> getComparator() {
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of bits set in the bitmap
+     */
+    private int cardinality() {
+        int count = 0;
+        for (long word : bitmap)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * @param other a set of outputs that must be on the same number of wires as this one
+     */
+    private void checkWires(OutputSet other) {
+        if (other.numWires != numWires)
+            throw new IllegalArgumentException("cannot combine outputs on " + numWires +
+                    " and " + other.numWires + " wires");
+    }
+
+    /**
+     * Overridden equals method.
+     *
+     * @return true if both sets hold the same outputs on the same number of wires
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof OutputSet))
+            return false;
+        OutputSet set = (OutputSet) o;
+        return numWires == set.numWires && size == set.size && Arrays.equals(bitmap, set.bitmap);
+    }
+
+    /**
+     * Overridden hashCode() method.
+     *
+     * @return a hashed integer for this OutputSet object
+     */
+    @Override
+    public int hashCode() {
+        return 31 * numWires + Arrays.hashCode(bitmap);
+    }
+}
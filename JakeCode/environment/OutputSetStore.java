@@ -0,0 +1,203 @@
+package environment;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.PrimitiveIterator;
+
+/**
+ * A persistent on-disk store of the unsorted outputs of prefix networks (such as Green32), so
+ * that later runs do not have to recompute them.
+ *
+ * Each output set is kept in its own file in the store's directory, named after the
+ * fingerprint of the network that produced it. A file holds a header, the network's
+ * comparators (so that a fingerprint collision is detected rather than trusted), and the
+ * packed outputs (see PackedBinarySequence) as big-endian longs in increasing order.
+ *
+ * Files are written to a temporary file and then atomically moved into place, so any number of
+ * JVMs can share a store: a reader only ever sees complete files. Readers map a file read-only
+ * and get its outputs as a LongBuffer, which ComparisonNetwork can evaluate directly without
+ * building any BinarySequence objects.
+ */
+public class OutputSetStore {
+
+    // "SNOS", for sorting network output set
+    private static final int MAGIC = 0x534E4F53;
+    private static final int VERSION = 1;
+
+    // magic, version, fingerprint, numWires, numComparators, number of outputs
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4 + 8;
+
+    // the number of outputs written to the file at a time
+    private static final int WRITE_CHUNK = 8192;
+
+    private final Path directory;
+
+    /**
+     * @param directory the directory the output sets are kept in (created if missing)
+     * @throws IOException if the directory cannot be created
+     */
+    public OutputSetStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Maps the stored unsorted outputs of a network, read-only.
+     *
+     * @param network the network the outputs belong to
+     * @return a read-only buffer of the packed outputs, or null if none are stored
+     * @throws IOException if the file cannot be read or does not belong to this network
+     */
+    public LongBuffer map(ComparisonNetwork network) throws IOException {
+        Path file = fileFor(network);
+        if (!Files.exists(file))
+            return null;
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            throw new IOException(file + " is not an output set file");
+        long fingerprint = buffer.getLong();
+        int numWires = buffer.getInt();
+        int numComparators = buffer.getInt();
+        long count = buffer.getLong();
+        if (fingerprint != network.fingerprint() || numWires != network.numWires() ||
+                numComparators != network.size())
+            throw new IOException(file + " holds the outputs of a different network");
+        int offset = dataOffset(numComparators);
+        if (count < 0 || buffer.capacity() < offset || count > (buffer.capacity() - offset) / Long.BYTES)
+            throw new IOException(file + " is truncated: it cannot hold " + count + " outputs");
+        if (!comparatorsMatch(buffer, network))
+            throw new IOException(file + " holds the outputs of a different network");
+
+        buffer.position(offset);
+        return buffer.slice().asLongBuffer().limit((int) count).asReadOnlyBuffer();
+    }
+
+    /**
+     * Reads the stored unsorted outputs of a network into an OutputSet.
+     *
+     * @param network the network the outputs belong to
+     * @return the stored outputs, or null if none are stored
+     * @throws IOException if the file cannot be read or does not belong to this network
+     */
+    public OutputSet get(ComparisonNetwork network) throws IOException {
+        LongBuffer outputs = map(network);
+        if (outputs == null)
+            return null;
+        OutputSet set = new OutputSet(network.numWires());
+        for (int i = 0; i < outputs.limit(); i++)
+            set.add(outputs.get(i));
+        return set;
+    }
+
+    /**
+     * Stores the unsorted outputs of a network, replacing any that are already stored.
+     *
+     * @param network the network the outputs belong to
+     * @param outputs the unsorted outputs of the network
+     * @throws IOException if the file cannot be written
+     */
+    public void put(ComparisonNetwork network, OutputSet outputs) throws IOException {
+        Path file = fileFor(network);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        boolean moved = false;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                int offset = dataOffset(network.size());
+                ByteBuffer header = ByteBuffer.allocate(offset);
+                header.putInt(MAGIC).putInt(VERSION).putLong(network.fingerprint())
+                        .putInt(network.numWires()).putInt(network.size()).putLong(outputs.size());
+                for (Comparator c : network.getNetwork())
+                    header.put((byte) c.getTopWire()).put((byte) c.getBottomWire());
+                header.clear();
+                writeFully(channel, header);
+
+                ByteBuffer chunk = ByteBuffer.allocate(WRITE_CHUNK * Long.BYTES);
+                PrimitiveIterator.OfLong it = outputs.iterator();
+                while (it.hasNext()) {
+                    chunk.putLong(it.nextLong());
+                    if (!chunk.hasRemaining()) {
+                        chunk.flip();
+                        writeFully(channel, chunk);
+                        chunk.clear();
+                    }
+                }
+                chunk.flip();
+                writeFully(channel, chunk);
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            moved = true;
+        } finally {
+            // whatever failed, do not leave the partial file behind
+            if (!moved)
+                Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Maps the stored unsorted outputs of a network, first computing and storing them from all
+     * binary inputs if they are not stored yet.
+     *
+     * @param network the network the outputs belong to
+     * @return a read-only buffer of the packed outputs
+     * @throws IOException if the file cannot be read or written
+     */
+    public LongBuffer computeIfAbsent(ComparisonNetwork network) throws IOException {
+        LongBuffer outputs = map(network);
+        if (outputs != null)
+            return outputs;
+        put(network, network.unsortedOutputSet());
+        return map(network);
+    }
+
+    /**
+     * @param network a comparison network
+     * @return the file the unsorted outputs of the network are kept in
+     */
+    private Path fileFor(ComparisonNetwork network) {
+        return directory.resolve(String.format("%016x.outputs", network.fingerprint()));
+    }
+
+    /**
+     * @param numComparators the number of comparators in the stored network
+     * @return the offset of the first output, rounded up to a multiple of 8 bytes
+     */
+    private static int dataOffset(int numComparators) {
+        return (HEADER_BYTES + 2 * numComparators + 7) & ~7;
+    }
+
+    /**
+     * @param buffer a buffer positioned at the stored comparators
+     * @param network the network to compare them with
+     * @return true if the stored comparators are the network's comparators
+     */
+    private static boolean comparatorsMatch(ByteBuffer buffer, ComparisonNetwork network) {
+        for (Comparator c : network.getNetwork())
+            if (buffer.get() != c.getTopWire() || buffer.get() != c.getBottomWire())
+                return false;
+        return true;
+    }
+
+    /**
+     * Writes the whole buffer to the channel.
+     *
+     * @param channel the channel to write to
+     * @param buffer the bytes to write
+     * @throws IOException if the write fails
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
@@ -0,0 +1,173 @@
+package environment;
+
+/**
+ * A class that represents a binary sequence for sorting, packed into the bits of a single long.
+ * This supports comparison networks of up to 64 wires.
+ *
+ * Wire 0 is stored in the most significant bit and wire numWires - 1 in the least significant
+ * bit, so the packed value counts up in the same order as BinarySequence.incrementByOne() and
+ * a sorted sequence (all 0's above all 1's) is always of the form 2^k - 1. This makes sorting
+ * checks, incrementing, equality and hashing constant time.
+ */
+public class PackedBinarySequence {
+
+    // the largest number of wires a packed sequence can hold
+    public static final int MAX_WIRES = 64;
+
+    // the number of wires in the sequence
+    private final int numWires;
+
+    // the packed binary sequence
+    private long value;
+
+    /**
+     * A constructor that takes as input the number of wires in a comparison network and
+     * initializes every element in the sequence to 0.
+     *
+     * @param numWires the number of wires in a comparison network
+     */
+    public PackedBinarySequence(int numWires) {
+        this(numWires, 0);
+    }
+
+    /**
+     * A constructor that takes as input the number of wires in a comparison network and an
+     * already packed value.
+     *
+     * @param numWires the number of wires in a comparison network
+     * @param value the packed value, with wire 0 in the most significant bit
+     */
+    public PackedBinarySequence(int numWires, long value) {
+        if (numWires < 0 || numWires > MAX_WIRES)
+            throw new IllegalArgumentException("a packed sequence holds at most " + MAX_WIRES +
+                    " wires, not " + numWires);
+        this.numWires = numWires;
+        this.value = value & mask(numWires);
+    }
+
+    /**
+     * A constructor that packs an existing BinarySequence.
+     *
+     * @param seq the BinarySequence to pack
+     */
+    public PackedBinarySequence(BinarySequence seq) {
+        this(seq.getBinarySequence().length, pack(seq.getBinarySequence()));
+    }
+
+    /**
+     * @return the packed value of this sequence
+     */
+    public long getValue() { return value; }
+
+    /**
+     * @param value the new packed value of this sequence
+     */
+    public void setValue(long value) { this.value = value & mask(numWires); }
+
+    /**
+     * @return the number of wires in this sequence
+     */
+    public int numWires() { return numWires; }
+
+    /**
+     * Determines if this sequence is in sorted order or not.
+     *
+     * @return true if this sequence is sorted, false if not.
+     */
+    public boolean isSorted() {
+        return isSorted(value);
+    }
+
+    /**
+     * A method that increments this sequence by one, wrapping back to all 0's after all 1's.
+     */
+    public void incrementByOne() {
+        value = (value + 1) & mask(numWires);
+    }
+
+    /**
+     * A method to check if this sequence is equal to all 0's. ( Used to stop incrementing).
+     *
+     * @return false if not equal to all 0's, else true.
+     */
+    public boolean allZeros() {
+        return value == 0;
+    }
+
+    /**
+     * @return an unpacked copy of this sequence
+     */
+    public BinarySequence toBinarySequence() {
+        int[] seq = new int[numWires];
+        for (int w = 0; w < numWires; w++)
+            seq[w] = (int) ((value >>> (numWires - 1 - w)) & 1);
+        return new BinarySequence(seq);
+    }
+
+    /**
+     * Determines if a packed value is in sorted order or not.
+     *
+     * @param value a packed value, with wire 0 in the most significant bit
+     * @return true if the value is sorted, false if not.
+     */
+    public static boolean isSorted(long value) {
+        return (value & (value + 1)) == 0;
+    }
+
+    /**
+     * @param numWires the number of wires in a comparison network
+     * @return a mask covering the bits used by a sequence on that many wires
+     */
+    public static long mask(int numWires) {
+        return numWires == MAX_WIRES ? -1L : (1L << numWires) - 1;
+    }
+
+    /**
+     * Packs an int array holding one bit per element.
+     *
+     * @param seq the int array to pack
+     * @return the packed value, with seq[0] in the most significant bit
+     */
+    public static long pack(int[] seq) {
+        long value = 0;
+        for (int bit : seq)
+            value = (value << 1) | bit;
+        return value;
+    }
+
+    /**
+     * Overridden equals method for use with Set and HashSet.
+     *
+     * @return true if this sequence is the same as another given sequence, else false
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof PackedBinarySequence))
+            return false;
+        PackedBinarySequence seq = (PackedBinarySequence) o;
+        return numWires == seq.numWires && value == seq.value;
+    }
+
+    /**
+     * Overridden hashCode() method for use with Set and HashSet.
+     *
+     * @return a hashed integer for this PackedBinarySequence object
+     */
+    @Override
+    public int hashCode() {
+        return 31 * numWires + Long.hashCode(value);
+    }
+
+    /**
+     * @return a string representing this binary sequence
+     */
+    @Override
+    public String toString() {
+        StringBuilder seq = new StringBuilder(numWires);
+        for (int w = 0; w < numWires; w++)
+            seq.append((value >>> (numWires - 1 - w)) & 1);
+        return seq.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package environment;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A class that evaluates a comparison network on all binary inputs across a ForkJoinPool.
+ *
+ * The 2^numWires inputs are split into ranges of bit-sliced blocks (see BitSlicedEvaluator).
+ * Each worker evaluates its range into its own local HashSet, and the Sets are merged as the
+ * tasks join, so no Set is ever shared between threads. The merged result is the same Set of
+ * unsorted outputs produced by the sequential methods.
+ */
+final class ParallelEvaluator {
+
+    // ranges with at most this many blocks (64 inputs each) are evaluated without splitting
+    private static final long BLOCKS_PER_TASK = 64;
+
+    private ParallelEvaluator() {
+    }
+
+    /**
+     * Evaluates the network on every binary input using the given pool.
+     *
+     * @param network the network to evaluate
+     * @param pool the ForkJoinPool to run the evaluation on
+     * @return the unsorted binarySequence outputs produced by the network
+     */
+    static Set<BinarySequence> operateOnAllBinary(ComparisonNetwork network, ForkJoinPool pool) {
+        int numWires = network.numWires();
+        EvaluationTask task = new EvaluationTask(numWires, BitSlicedEvaluator.topWires(network),
+                BitSlicedEvaluator.bottomWires(network), 0, BitSlicedEvaluator.numBlocks(numWires));
+        return pool.invoke(task);
+    }
+
+    /**
+     * A task that evaluates a range of blocks, splitting it in half until it is small enough.
+     */
+    private static class EvaluationTask extends RecursiveTask<Set<BinarySequence>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int numWires;
+        private final int[] tops;
+        private final int[] bottoms;
+        private final long fromBlock;
+        private final long toBlock;
+
+        EvaluationTask(int numWires, int[] tops, int[] bottoms, long fromBlock, long toBlock) {
+            this.numWires = numWires;
+            this.tops = tops;
+            this.bottoms = bottoms;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        @Override
+        protected Set<BinarySequence> compute() {
+            if (toBlock - fromBlock <= BLOCKS_PER_TASK) {
+                Set<BinarySequence> unsortedOutputs = new HashSet<>();
+                BitSlicedEvaluator.collectUnsorted(numWires, tops, bottoms, fromBlock, toBlock,
+                        unsortedOutputs);
+                return unsortedOutputs;
+            }
+
+            long middle = fromBlock + (toBlock - fromBlock) / 2;
+            EvaluationTask upper = new EvaluationTask(numWires, tops, bottoms, middle, toBlock);
+            upper.fork();
+            Set<BinarySequence> unsortedOutputs =
+                    new EvaluationTask(numWires, tops, bottoms, fromBlock, middle).compute();
+            Set<BinarySequence> upperOutputs = upper.join();
+
+            // merge the smaller Set into the larger one
+            if (upperOutputs.size() > unsortedOutputs.size()) {
+                upperOutputs.addAll(unsortedOutputs);
+                return upperOutputs;
+            }
+            unsortedOutputs.addAll(upperOutputs);
+            return unsortedOutputs;
+        }
+    }
+}
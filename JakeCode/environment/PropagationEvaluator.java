@@ -0,0 +1,71 @@
+package environment;
+
+/**
+ * A class that evaluates a comparison network by propagating the set of distinct reachable
+ * states through it, one comparator at a time, instead of pushing every input through on its
+ * own.
+ *
+ * Many inputs collapse onto the same intermediate state as they pass through a network (after
+ * Green's first 32 comparators only 151 unsorted states are left out of 65,536 inputs), so the
+ * states are deduplicated after every comparator. Sorted states are dropped as soon as they
+ * appear, since a comparator can never unsort a sorted sequence. For good networks the number of
+ * live states, and with it the work per comparator, shrinks sharply after the first few layers.
+ *
+ * States are packed as in PackedBinarySequence, and deduplicated with an OutputSet.
+ */
+final class PropagationEvaluator {
+
+    private PropagationEvaluator() {
+    }
+
+    /**
+     * Evaluates the network on every binary input by propagating the reachable states.
+     *
+     * @param network the network to evaluate
+     * @return the unsorted outputs produced by the network
+     */
+    static OutputSet unsortedOutputSet(ComparisonNetwork network) {
+        int numWires = network.numWires();
+
+        // every unsorted input is a reachable state before the first comparator
+        long numInputs = 1L << numWires;
+        long[] states = new long[(int) (numInputs - numWires - 1)];
+        int numStates = 0;
+        for (long input = 0; input < numInputs; input++)
+            if (!PackedBinarySequence.isSorted(input))
+                states[numStates++] = input;
+
+        OutputSet seen = new OutputSet(numWires);
+        long[] next = new long[states.length];
+        for (Comparator c : network.getNetwork()) {
+            long topBit = 1L << (numWires - 1 - c.getTopWire());
+            long bottomBit = 1L << (numWires - 1 - c.getBottomWire());
+            int numNext = 0;
+
+            for (int i = 0; i < numStates; i++) {
+                long state = states[i];
+                if ((state & topBit) != 0 && (state & bottomBit) == 0) {
+                    state ^= topBit | bottomBit;
+                    if (PackedBinarySequence.isSorted(state))
+                        continue;
+                }
+                if (seen.add(state))
+                    next[numNext++] = state;
+            }
+
+            // clear only the states that were added, rather than the whole bitmap
+            for (int i = 0; i < numNext; i++)
+                seen.remove(next[i]);
+
+            long[] swap = states;
+            states = next;
+            next = swap;
+            numStates = numNext;
+        }
+
+        OutputSet unsortedOutputs = new OutputSet(numWires);
+        for (int i = 0; i < numStates; i++)
+            unsortedOutputs.add(states[i]);
+        return unsortedOutputs;
+    }
+}
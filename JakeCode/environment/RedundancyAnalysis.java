@@ -0,0 +1,118 @@
+package environment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An analysis that finds the comparators of a network that never swap on any binary input.
+ *
+ * Such a "dead" comparator can be removed without changing a single output, since the inputs it
+ * sees are already in order on its two wires. Random networks have plenty of them: every
+ * degenerate Comparator(i, i) is dead, as is any comparator whose wires an earlier comparator
+ * has already put in order. Removing them all at once is also safe, because removing a dead
+ * comparator does not change what any other comparator sees.
+ *
+ * The swaps are counted with a bit-sliced evaluation (see BitSlicedEvaluator): a comparator swaps
+ * in every lane where its top wire holds a 1 and its bottom wire holds a 0, so each comparator
+ * adds a bitCount of top & ~bottom per block.
+ *
+ * The analysis is itself a full evaluation, so pruning a network to evaluate it faster only pays
+ * off for a network that is evaluated many times. The searches use the dead comparators as
+ * preferred mutation targets instead (see NetworkUtilities.deadFirstMutator()), and pruned()
+ * is for reporting a network without them.
+ */
+public final class RedundancyAnalysis {
+
+    private final int numWires;
+
+    // the comparators of the network when it was analysed
+    private final ArrayList<Comparator> comparators;
+
+    // the number of binary inputs on which each comparator swaps its wires
+    private final long[] swapCounts;
+
+    // the indices of the comparators that never swap, in increasing order
+    private final int[] deadIndices;
+
+    private RedundancyAnalysis(ComparisonNetwork network, long[] swapCounts) {
+        this.numWires = network.numWires();
+        this.comparators = new ArrayList<>(network.getNetwork());
+        this.swapCounts = swapCounts;
+
+        int[] dead = new int[swapCounts.length];
+        int numDead = 0;
+        for (int i = 0; i < swapCounts.length; i++)
+            if (swapCounts[i] == 0)
+                dead[numDead++] = i;
+        this.deadIndices = Arrays.copyOf(dead, numDead);
+    }
+
+    /**
+     * Runs every binary input through the network, counting the swaps made by each comparator.
+     *
+     * @param network the network to analyse
+     * @return the analysis of the network
+     */
+    public static RedundancyAnalysis of(ComparisonNetwork network) {
+        int numWires = network.numWires();
+        int[] tops = BitSlicedEvaluator.topWires(network);
+        int[] bottoms = BitSlicedEvaluator.bottomWires(network);
+        long laneMask = BitSlicedEvaluator.laneMask(numWires);
+        long[] wires = new long[numWires];
+        long[] swapCounts = new long[tops.length];
+
+        for (long block = 0; block < BitSlicedEvaluator.numBlocks(numWires); block++) {
+            BitSlicedEvaluator.loadBlock(wires, block);
+            for (int i = 0; i < tops.length; i++) {
+                long top = wires[tops[i]];
+                long bottom = wires[bottoms[i]];
+                swapCounts[i] += Long.bitCount(top & ~bottom & laneMask);
+                wires[tops[i]] = top & bottom;
+                wires[bottoms[i]] = top | bottom;
+            }
+        }
+        return new RedundancyAnalysis(network, swapCounts);
+    }
+
+    /**
+     * @param index the index of a comparator in the network
+     * @return the number of binary inputs on which the comparator swaps its wires
+     */
+    public long getSwapCount(int index) {
+        return swapCounts[index];
+    }
+
+    /**
+     * @param index the index of a comparator in the network
+     * @return true if the comparator never swaps its wires
+     */
+    public boolean isDead(int index) {
+        return swapCounts[index] == 0;
+    }
+
+    /**
+     * @return the indices of the comparators that never swap, in increasing order
+     */
+    public int[] getDeadIndices() {
+        return deadIndices.clone();
+    }
+
+    /**
+     * @return the number of comparators that never swap
+     */
+    public int numDead() {
+        return deadIndices.length;
+    }
+
+    /**
+     * @return a new network without the dead comparators, which has the same outputs as the
+     * analysed network on every input
+     */
+    public ComparisonNetwork pruned() {
+        ArrayList<Comparator> live = new ArrayList<>(swapCounts.length - deadIndices.length);
+        for (int i = 0; i < swapCounts.length; i++)
+            if (swapCounts[i] != 0)
+                live.add(comparators.get(i));
+        return new ComparisonNetwork(numWires, live);
+    }
+}
@@ -0,0 +1,352 @@
+package environment;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Counters for a running search: how many fitness evaluations it makes, how long and how much
+ * memory each takes, how many inputs they cover, how many moves are accepted and rejected, and
+ * the best fitness so far.
+ *
+ * Every counter is a LongAdder (or a histogram of LongAdder buckets), so any number of search
+ * threads can record into one SearchMetrics without contending. The best fitness is only
+ * written when it improves, which after the first few evaluations is rare. Each evaluation also emits an
+ * EvaluationEvent, and each accepted move an AcceptedMoveEvent, for Flight Recorder; both cost
+ * next to nothing unless a recording enables them.
+ *
+ * Inputs are counted by the evaluators the searches use (the bit-sliced, layered, compiled and
+ * incremental evaluators), per thread, as they run them: an evaluation that stops at its cutoff
+ * counts only the inputs it got to, an incremental one counts the inputs it re-ran through part
+ * of the network, and one answered by a FitnessCache counts none. Evaluations by other
+ * evaluators (e.g. the parallel ones, which run on other threads) are not counted.
+ *
+ * Allocations are measured per thread with com.sun.management.ThreadMXBean where the JVM
+ * supports it, and are reported as 0 otherwise.
+ */
+public class SearchMetrics {
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+    // the number of inputs each thread has run through a network, counted by the evaluators
+    private static final ThreadLocal<long[]> THREAD_INPUTS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder inputs = new LongAdder();
+    private final LongAdder evaluationNanos = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final Histogram evaluationTimes = new Histogram();
+    private final AtomicInteger bestFitness = new AtomicInteger(Integer.MAX_VALUE);
+
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * @param fitness a fitness function
+     * @return the same fitness function, recording every evaluation
+     */
+    public <N> HillClimbingEngine.BoundedFitness<N> wrap(HillClimbingEngine.BoundedFitness<N> fitness) {
+        return (network, cutoff) -> {
+            EvaluationEvent event = new EvaluationEvent();
+            long allocated = allocatedBytes();
+            long inputs = threadInputs();
+            long start = System.nanoTime();
+            event.begin();
+            int value = fitness.evaluate(network, cutoff);
+            event.end();
+            recordEvaluation(event, start, allocated, inputs, value, cutoff);
+            return value;
+        };
+    }
+
+    /**
+     * Runs and records one evaluation that does not go through a BoundedFitness.
+     *
+     * @param evaluation evaluates a network
+     * @param fitness the fitness of the evaluation's result
+     * @return the result of the evaluation
+     */
+    public <R> R measure(Supplier<R> evaluation, ToIntFunction<R> fitness) {
+        EvaluationEvent event = new EvaluationEvent();
+        long allocated = allocatedBytes();
+        long inputs = threadInputs();
+        long start = System.nanoTime();
+        event.begin();
+        R result = evaluation.get();
+        event.end();
+        recordEvaluation(event, start, allocated, inputs, fitness.applyAsInt(result), Integer.MAX_VALUE);
+        return result;
+    }
+
+    /**
+     * Records whether a move was kept.
+     *
+     * @param accepted whether the move was kept
+     * @param iteration the iteration of the search the move was made in
+     * @param previousFitness the fitness before the move
+     * @param fitness the fitness of the move
+     */
+    public void recordMove(boolean accepted, long iteration, int previousFitness, int fitness) {
+        if (!accepted) {
+            rejected.increment();
+            return;
+        }
+        this.accepted.increment();
+        recordFitness(fitness);
+
+        AcceptedMoveEvent event = new AcceptedMoveEvent();
+        if (event.shouldCommit()) {
+            event.iteration = iteration;
+            event.previousFitness = previousFitness;
+            event.fitness = fitness;
+            event.commit();
+        }
+    }
+
+    /**
+     * Prints a report to the stream every period, on a background thread, until the returned
+     * reporter is closed.
+     *
+     * @param periodMillis the time between reports, in milliseconds
+     * @param out the stream to print to
+     * @return the reporter
+     */
+    public Reporter startReporter(long periodMillis, PrintStream out) {
+        return new Reporter(periodMillis, out);
+    }
+
+    /**
+     * Counts inputs run through a network by the current thread. Called by the evaluators.
+     *
+     * @param numInputs the number of inputs
+     */
+    static void countInputs(long numInputs) {
+        THREAD_INPUTS.get()[0] += numInputs;
+    }
+
+    private void recordEvaluation(EvaluationEvent event, long start, long allocatedBefore,
+                                  long inputsBefore, int fitness, int cutoff) {
+        long nanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        evaluations.increment();
+        inputs.add(threadInputs() - inputsBefore);
+        evaluationNanos.add(nanos);
+        allocatedBytes.add(allocated);
+        evaluationTimes.record(nanos);
+        if (fitness < cutoff)
+            recordFitness(fitness);
+
+        if (event.shouldCommit()) {
+            event.fitness = fitness;
+            event.cutoff = cutoff;
+            event.allocatedBytes = allocated;
+            event.commit();
+        }
+    }
+
+    /**
+     * Lowers the best fitness to the given one, writing only when it is lower.
+     *
+     * @param fitness an exact fitness
+     */
+    private void recordFitness(int fitness) {
+        int best = bestFitness.get();
+        while (fitness < best && !bestFitness.compareAndSet(best, fitness))
+            best = bestFitness.get();
+    }
+
+    /**
+     * @return the number of evaluations recorded
+     */
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    /**
+     * @return the number of inputs the recorded evaluations ran through a network, as counted
+     * by the evaluators
+     */
+    public long getInputsProcessed() {
+        return inputs.sum();
+    }
+
+    /**
+     * @return the average time of an evaluation, in nanoseconds
+     */
+    public double getAverageEvaluationNanos() {
+        long n = evaluations.sum();
+        return n == 0 ? 0 : (double) evaluationNanos.sum() / n;
+    }
+
+    /**
+     * @return the average number of bytes allocated by an evaluation
+     */
+    public double getAverageAllocatedBytes() {
+        long n = evaluations.sum();
+        return n == 0 ? 0 : (double) allocatedBytes.sum() / n;
+    }
+
+    /**
+     * @return the histogram of evaluation times, in nanoseconds
+     */
+    public Histogram getEvaluationTimes() {
+        return evaluationTimes;
+    }
+
+    /**
+     * @return the number of moves kept
+     */
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    /**
+     * @return the number of moves rejected
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return the fraction of moves that were kept
+     */
+    public double getAcceptanceRate() {
+        long a = accepted.sum();
+        long total = a + rejected.sum();
+        return total == 0 ? 0 : (double) a / total;
+    }
+
+    /**
+     * @return the lowest exact fitness recorded, or Integer.MAX_VALUE if there is none
+     */
+    public int getBestFitness() {
+        return bestFitness.get();
+    }
+
+    @Override
+    public String toString() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return String.format("%.1fs: %d evaluations (%.0f/s, %.0f inputs/s), %.1f us/evaluation " +
+                        "(p50 <= %.1f us, p99 <= %.1f us), %.0f bytes/evaluation, " +
+                        "%d accepted, %d rejected (%.2f%%), best fitness %s",
+                seconds, getEvaluations(), getEvaluations() / seconds, getInputsProcessed() / seconds,
+                getAverageEvaluationNanos() / 1e3, evaluationTimes.percentile(0.5) / 1e3,
+                evaluationTimes.percentile(0.99) / 1e3, getAverageAllocatedBytes(),
+                getAccepted(), getRejected(), 100 * getAcceptanceRate(),
+                getBestFitness() == Integer.MAX_VALUE ? "-" : String.valueOf(getBestFitness()));
+    }
+
+    /**
+     * @return the number of inputs the current thread has run through a network so far
+     */
+    private static long threadInputs() {
+        return THREAD_INPUTS.get()[0];
+    }
+
+    /**
+     * @return the bytes allocated so far by the current thread, or 0 if they cannot be measured
+     */
+    private static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * @return the bean that measures thread allocations, or null if the JVM cannot
+     */
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return null;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported())
+            return null;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+    /**
+     * A histogram of non-negative values with one bucket per power of two, so recording is a
+     * single LongAdder increment and percentiles are exact to within a factor of two. Most
+     * values land in the same one or two buckets, which a LongAdder spreads across threads.
+     */
+    public static final class Histogram {
+
+        // bucket b counts the values v with 64 - numberOfLeadingZeros(v) == b
+        private final LongAdder[] buckets = new LongAdder[65];
+
+        public Histogram() {
+            for (int b = 0; b < buckets.length; b++)
+                buckets[b] = new LongAdder();
+        }
+
+        /**
+         * @param value the value to record
+         */
+        public void record(long value) {
+            buckets[64 - Long.numberOfLeadingZeros(Math.max(value, 0))].increment();
+        }
+
+        /**
+         * @return the number of values recorded
+         */
+        public long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets)
+                count += bucket.sum();
+            return count;
+        }
+
+        /**
+         * @param fraction the fraction of values, from 0 to 1
+         * @return an upper bound on the smallest value at least that fraction of the recorded
+         * values are at most, or 0 if nothing was recorded
+         */
+        public long percentile(double fraction) {
+            long count = count();
+            long target = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                seen += buckets[b].sum();
+                if (seen >= target && seen > 0)
+                    return b == 0 ? 0 : b == 64 ? Long.MAX_VALUE : (1L << b) - 1;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Prints the metrics on a background thread at a fixed rate.
+     */
+    public final class Reporter implements AutoCloseable {
+
+        private final ScheduledExecutorService executor;
+        private final PrintStream out;
+
+        private Reporter(long periodMillis, PrintStream out) {
+            this.out = out;
+            this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "search-metrics-reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleAtFixedRate(() -> out.println(SearchMetrics.this), periodMillis,
+                    periodMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Stops reporting and prints one last report.
+         */
+        @Override
+        public void close() {
+            executor.shutdownNow();
+            out.println(SearchMetrics.this);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package environment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * A multi-start simulated annealing engine that runs its K restarts in parallel.
+ *
+ * Each restart builds a starting network, then proposes M mutants of its current network. A
+ * mutant that is no worse is always kept; a worse one is kept with probability
+ * exp(-(mutantFitness - currentFitness) / T), where the temperature T follows a CoolingSchedule
+ * created fresh for the restart. The best network seen so far is tracked separately, since the
+ * current network may move away from it.
+ *
+ * The acceptance test is turned around so that a mutant can be scored with a cutoff, as in
+ * HillClimbingEngine: the random number u is drawn first, and the mutant is kept only if its
+ * fitness is at most currentFitness - T ln(u). An evaluation that reaches that threshold stops
+ * early, so clearly rejected mutants cost far less than a full evaluation. This draws the same
+ * decisions as comparing exp(-delta / T) with u.
+ *
+ * Restarts are seeded from a single master seed the same way as in HillClimbingEngine, so a run
+ * with the same seed gives the same results no matter how many threads are used, and the
+ * results are reported as HillClimbingEngine results so the two can be compared directly.
+ *
+ * Unlike hill climbing, the current network is not always the best one, so the mutator must
+ * not change its argument (NetworkUtilities.copyMutate rather than hillClimbMutate).
+ *
+ * @param <N> the type of network being searched
+ */
+public class SimulatedAnnealingEngine<N> {
+
+    // creates the starting network of a restart
+    private final Function<Random, N> initializer;
+
+    // creates a mutant of a network, without changing it
+    private final BiFunction<N, Random, N> mutator;
+
+    // scores a network, lower is better
+    private final HillClimbingEngine.BoundedFitness<N> fitness;
+
+    // creates the cooling schedule of a restart from its number of mutations
+    private final IntFunction<CoolingSchedule> cooling;
+
+    // the number of threads restarts run on
+    private final int numThreads;
+
+    // records evaluations and moves, or null
+    private SearchMetrics metrics;
+
+    /**
+     * @param initializer creates the starting network of a restart
+     * @param mutator creates a mutant of a network, without changing it
+     * @param fitness scores a network, lower is better, stopping at a cutoff
+     * @param cooling creates the cooling schedule of a restart from its number of mutations
+     * @param numThreads the number of threads restarts run on
+     */
+    public SimulatedAnnealingEngine(Function<Random, N> initializer, BiFunction<N, Random, N> mutator,
+                                    HillClimbingEngine.BoundedFitness<N> fitness,
+                                    IntFunction<CoolingSchedule> cooling, int numThreads) {
+        this.initializer = initializer;
+        this.mutator = mutator;
+        this.fitness = fitness;
+        this.cooling = cooling;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Creates an engine that uses one thread per available processor.
+     *
+     * @param initializer creates the starting network of a restart
+     * @param mutator creates a mutant of a network, without changing it
+     * @param fitness scores a network, lower is better, stopping at a cutoff
+     * @param cooling creates the cooling schedule of a restart from its number of mutations
+     */
+    public SimulatedAnnealingEngine(Function<Random, N> initializer, BiFunction<N, Random, N> mutator,
+                                    HillClimbingEngine.BoundedFitness<N> fitness,
+                                    IntFunction<CoolingSchedule> cooling) {
+        this(initializer, mutator, fitness, cooling, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Records every evaluation and every kept or rejected mutation of later runs.
+     *
+     * @param metrics the metrics to record into, or null to stop recording
+     */
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Runs K independent annealing runs of M mutations each.
+     *
+     * @param numRestarts the number of restarts (K)
+     * @param numMutations the number of mutations per restart (M)
+     * @param seed the master seed that every restart's Random is derived from
+     * @return the results of every restart and the best network overall
+     */
+    public HillClimbingEngine.Result<N> run(int numRestarts, int numMutations, long seed) {
+        Random seeds = new Random(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, numRestarts));
+        try {
+            List<Future<HillClimbingEngine.RestartResult<N>>> futures = new ArrayList<>();
+            for (int k = 0; k < numRestarts; k++) {
+                final int restart = k;
+                final long restartSeed = seeds.nextLong();
+                futures.add(executor.submit(() -> runRestart(restart, numMutations, restartSeed)));
+            }
+
+            List<HillClimbingEngine.RestartResult<N>> restarts = new ArrayList<>();
+            for (Future<HillClimbingEngine.RestartResult<N>> future : futures)
+                restarts.add(future.get());
+            return new HillClimbingEngine.Result<>(restarts);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("simulated annealing was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("a simulated annealing restart failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Performs a single annealing run on the calling thread. As with
+     * HillClimbingEngine.runRestart(), restart k of run(K, M, seed) uses the (k+1)th nextLong()
+     * of a Random seeded with seed.
+     *
+     * @param restart the index of the restart
+     * @param numMutations the number of mutations (M)
+     * @param restartSeed the seed of the restart's Random
+     * @return the result of the restart; its accepted count includes worse mutants that were kept
+     */
+    public HillClimbingEngine.RestartResult<N> runRestart(int restart, int numMutations, long restartSeed) {
+        SearchMetrics metrics = this.metrics;
+        HillClimbingEngine.BoundedFitness<N> fitness =
+                metrics == null ? this.fitness : metrics.wrap(this.fitness);
+        CoolingSchedule schedule = cooling.apply(numMutations);
+        Random rand = new Random(restartSeed);
+
+        N currentNetwork = initializer.apply(rand);
+        int currentFitness = fitness.evaluate(currentNetwork, Integer.MAX_VALUE);
+        int initialFitness = currentFitness;
+        N bestNetwork = currentNetwork;
+        int bestFitness = currentFitness;
+        long fitnessSum = currentFitness;
+        int accepted = 0;
+        long bestEvaluation = 1;
+
+        for (int m = 0; m < numMutations; m++) {
+            // keep the mutant iff fitness <= current - T ln(u), i.e. exp(-delta / T) >= u
+            double threshold = currentFitness - schedule.temperature() * Math.log(1 - rand.nextDouble());
+            int cutoff = (int) Math.min(Math.floor(threshold) + 1, Integer.MAX_VALUE);
+
+            N mutatedNetwork = mutator.apply(currentNetwork, rand);
+            int mutatedFitness = fitness.evaluate(mutatedNetwork, cutoff);
+            fitnessSum += mutatedFitness;
+            boolean accept = mutatedFitness < cutoff;
+            if (metrics != null)
+                metrics.recordMove(accept, m, currentFitness, mutatedFitness);
+            if (accept) {
+                currentNetwork = mutatedNetwork;
+                currentFitness = mutatedFitness;
+                accepted++;
+                if (currentFitness < bestFitness) {
+                    bestNetwork = currentNetwork;
+                    bestFitness = currentFitness;
+                    bestEvaluation = m + 2;
+                }
+            }
+            schedule.step(accept);
+        }
+        return new HillClimbingEngine.RestartResult<>(restart, bestNetwork, initialFitness,
+                bestFitness, numMutations + 1, fitnessSum, accepted, bestEvaluation);
+    }
+}
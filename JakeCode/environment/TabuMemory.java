@@ -0,0 +1,104 @@
+package environment;
+
+/**
+ * A fixed-size memory of the most recent long keys, used by TabuSearchEngine to remember recent
+ * moves and recently visited networks.
+ *
+ * The keys are kept twice: in a ring buffer in the order they were added, so the oldest can be
+ * forgotten once the memory is full, and in an open-addressing hash table (linear probing, with
+ * backward-shift deletion) so that a lookup takes constant time. Both are plain long arrays
+ * allocated once, so a search can ask about thousands of candidate moves per second without
+ * boxing a key or allocating an entry.
+ *
+ * Not thread-safe: lookups may run on many threads at once, but only while nothing is added.
+ */
+final class TabuMemory {
+
+    // marks an empty slot of the table; a key equal to it is stored as EMPTY_ALIAS instead
+    private static final long EMPTY = 0;
+    private static final long EMPTY_ALIAS = 0x9e3779b97f4a7c15L;
+
+    // the keys in the order they were added, oldest at head once the ring is full
+    private final long[] ring;
+    private int head;
+    private int count;
+
+    // the same keys, hashed; at most half full
+    private final long[] table;
+    private final int mask;
+
+    /**
+     * @param tenure the number of keys remembered, after which the oldest is forgotten
+     */
+    TabuMemory(int tenure) {
+        if (tenure <= 0)
+            throw new IllegalArgumentException("tenure must be positive, not " + tenure);
+        this.ring = new long[tenure];
+        this.table = new long[Integer.highestOneBit(tenure) << 2];
+        this.mask = table.length - 1;
+    }
+
+    /**
+     * Remembers a key, forgetting the oldest one if the memory is full. A key that is already
+     * remembered is left where it is.
+     *
+     * @param key the key to remember
+     */
+    void add(long key) {
+        key = key == EMPTY ? EMPTY_ALIAS : key;
+        if (contains(key))
+            return;
+        if (count == ring.length) {
+            remove(ring[head]);
+            ring[head] = key;
+            head = (head + 1) % ring.length;
+        } else {
+            ring[count++] = key;
+        }
+        insert(key);
+    }
+
+    /**
+     * @param key the key to look up
+     * @return true if the key is remembered
+     */
+    boolean contains(long key) {
+        key = key == EMPTY ? EMPTY_ALIAS : key;
+        for (int i = slot(key); table[i] != EMPTY; i = (i + 1) & mask)
+            if (table[i] == key)
+                return true;
+        return false;
+    }
+
+    private void insert(long key) {
+        int i = slot(key);
+        while (table[i] != EMPTY)
+            i = (i + 1) & mask;
+        table[i] = key;
+    }
+
+    /**
+     * Removes a key from the table, moving back any later key of the same probe run that would
+     * otherwise no longer be found.
+     */
+    private void remove(long key) {
+        int i = slot(key);
+        while (table[i] != key)
+            i = (i + 1) & mask;
+        table[i] = EMPTY;
+        for (int j = (i + 1) & mask; table[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(table[j]);
+            // move table[j] into the hole unless its home lies cyclically in (i, j]
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                table[i] = table[j];
+                table[j] = EMPTY;
+                i = j;
+            }
+        }
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
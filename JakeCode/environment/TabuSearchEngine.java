@@ -0,0 +1,311 @@
+package environment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * A multi-start tabu search over comparison networks of a fixed size.
+ *
+ * Where hill climbing tries one random mutation at a time, tabu search samples a neighbourhood
+ * of candidate moves at every step, each replacing one comparator (index, top, bottom), scores
+ * them all in parallel, and always moves to the best candidate that is not tabu, even if it is
+ * worse than the current network. Two fixed-size memories (see TabuMemory) keep the search from
+ * going straight back:
+ *  - the move that would undo a recent move, i.e. putting the comparator it replaced back at
+ *    the same index, is tabu for the next moveTenure steps;
+ *  - a network whose NetworkFingerprint matches one of the last networkTenure networks visited
+ *    is tabu as well, which also catches undoing a move some other way, or stepping onto a
+ *    network that only differs by reordering independent comparators.
+ * A tabu candidate is still taken if it is better than the best network found so far
+ * (aspiration), since that can never be a step backwards.
+ *
+ * Candidates are scored with a shared bound: each one stops early once it is known to be worse
+ * than the best candidate of its step so far. The candidate moved to is always scored exactly,
+ * so the search itself does not depend on the order the candidates finish in and a run with the
+ * same seed gives the same results; only the fitness sum of the rejected candidates may differ.
+ *
+ * An engine created without a fitness function scores by the number of unsorted outputs and
+ * evaluates candidates incrementally (see IncrementalEvaluator): since every candidate replaces
+ * a single comparator of the current network, only the comparators from the last checkpoint
+ * before the replaced one are re-run. The current network's checkpoints are brought up to date
+ * whenever the search moves, which is not counted as an evaluation.
+ *
+ * Restarts run one after another, each using the whole pool for its candidates. They are seeded
+ * from a single master seed the same way as in HillClimbingEngine, and the results are reported
+ * as HillClimbingEngine results, counting every candidate as an evaluation.
+ */
+public class TabuSearchEngine {
+
+    // creates the starting network of a restart
+    private final Function<Random, ComparisonNetwork> initializer;
+
+    // scores a network, lower is better, or null to count unsorted outputs incrementally
+    private final HillClimbingEngine.BoundedFitness<ComparisonNetwork> fitness;
+
+    // the number of threads candidates are scored on
+    private final int numThreads;
+
+    private int numCandidates = 32;
+    private int moveTenure = 16;
+    private int networkTenure = 1024;
+
+    // records evaluations and moves, or null
+    private SearchMetrics metrics;
+
+    /**
+     * @param initializer creates the starting network of a restart
+     * @param fitness scores a network, lower is better, stopping at a cutoff, or null to count
+     * unsorted outputs incrementally
+     * @param numThreads the number of threads candidates are scored on
+     */
+    public TabuSearchEngine(Function<Random, ComparisonNetwork> initializer,
+                            HillClimbingEngine.BoundedFitness<ComparisonNetwork> fitness, int numThreads) {
+        this.initializer = initializer;
+        this.fitness = fitness;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Creates an engine that uses one thread per available processor.
+     *
+     * @param initializer creates the starting network of a restart
+     * @param fitness scores a network, lower is better, stopping at a cutoff
+     */
+    public TabuSearchEngine(Function<Random, ComparisonNetwork> initializer,
+                            HillClimbingEngine.BoundedFitness<ComparisonNetwork> fitness) {
+        this(initializer, fitness, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an engine that scores networks by their number of unsorted outputs, evaluating
+     * every candidate incrementally from the current network, on one thread per available
+     * processor.
+     *
+     * @param initializer creates the starting network of a restart
+     */
+    public TabuSearchEngine(Function<Random, ComparisonNetwork> initializer) {
+        this(initializer, null);
+    }
+
+    /**
+     * @param numCandidates the number of candidate moves sampled and scored at every step
+     */
+    public void setCandidates(int numCandidates) {
+        if (numCandidates <= 0)
+            throw new IllegalArgumentException("numCandidates must be positive, not " + numCandidates);
+        this.numCandidates = numCandidates;
+    }
+
+    /**
+     * @param moveTenure the number of steps the move undoing a step stays tabu
+     * @param networkTenure the number of most recently visited networks that are tabu
+     */
+    public void setTenure(int moveTenure, int networkTenure) {
+        this.moveTenure = moveTenure;
+        this.networkTenure = networkTenure;
+    }
+
+    /**
+     * Records every evaluation of later runs, and every candidate as a move that was kept or
+     * rejected.
+     *
+     * @param metrics the metrics to record into, or null to stop recording
+     */
+    public void setMetrics(SearchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Runs K independent tabu searches of M steps each, so 1 + M * numCandidates evaluations
+     * per restart.
+     *
+     * @param numRestarts the number of restarts (K)
+     * @param numSteps the number of steps per restart (M)
+     * @param seed the master seed that every restart's Random is derived from
+     * @return the results of every restart and the best network overall
+     */
+    public HillClimbingEngine.Result<ComparisonNetwork> run(int numRestarts, int numSteps, long seed) {
+        Random seeds = new Random(seed);
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        try {
+            List<HillClimbingEngine.RestartResult<ComparisonNetwork>> restarts = new ArrayList<>();
+            for (int k = 0; k < numRestarts; k++)
+                restarts.add(search(k, numSteps, seeds.nextLong(), pool));
+            return new HillClimbingEngine.Result<>(restarts);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Performs a single tabu search, scoring candidates on the calling thread. As with
+     * HillClimbingEngine.runRestart(), restart k of run(K, M, seed) uses the (k+1)th nextLong()
+     * of a Random seeded with seed, and gives the same result.
+     *
+     * @param restart the index of the restart
+     * @param numSteps the number of steps (M)
+     * @param restartSeed the seed of the restart's Random
+     * @return the result of the restart
+     */
+    public HillClimbingEngine.RestartResult<ComparisonNetwork> runRestart(int restart, int numSteps,
+                                                                          long restartSeed) {
+        return search(restart, numSteps, restartSeed, null);
+    }
+
+    /**
+     * Performs a single tabu search.
+     *
+     * @param restart the index of this restart
+     * @param numSteps the number of steps
+     * @param restartSeed the seed of the Random used by this restart only
+     * @param pool the pool to score candidates on, or null to score them on the calling thread
+     * @return the result of this restart
+     */
+    private HillClimbingEngine.RestartResult<ComparisonNetwork> search(int restart, int numSteps,
+                                                                       long restartSeed, ForkJoinPool pool) {
+        SearchMetrics metrics = this.metrics;
+        TabuMemory tabuMoves = new TabuMemory(moveTenure);
+        TabuMemory tabuNetworks = new TabuMemory(networkTenure);
+        Random rand = new Random(restartSeed);
+
+        long[] moves = new long[numCandidates];
+        ComparisonNetwork[] candidates = new ComparisonNetwork[numCandidates];
+        int[] fitnesses = new int[numCandidates];
+        boolean[] tabu = new boolean[numCandidates];
+
+        ComparisonNetwork currentNetwork = initializer.apply(rand);
+        int currentFitness;
+        IncrementalEvaluator evaluator;
+        // scores candidates[c], or in incremental mode moves[c] applied to the current network
+        HillClimbingEngine.BoundedFitness<Integer> candidateFitness;
+        if (fitness != null) {
+            evaluator = null;
+            currentFitness = metrics == null ? fitness.evaluate(currentNetwork, Integer.MAX_VALUE)
+                    : metrics.wrap(fitness).evaluate(currentNetwork, Integer.MAX_VALUE);
+            candidateFitness = (c, cutoff) -> fitness.evaluate(candidates[c], cutoff);
+        } else {
+            final ComparisonNetwork start = currentNetwork;
+            evaluator = metrics == null ? new IncrementalEvaluator(start)
+                    : metrics.measure(() -> new IncrementalEvaluator(start), IncrementalEvaluator::fitness);
+            currentFitness = evaluator.fitness();
+            candidateFitness = (c, cutoff) -> evaluator.evaluateReplacement(
+                    (int) (moves[c] >>> 16), comparatorOf(moves[c]), cutoff);
+        }
+        if (metrics != null)
+            candidateFitness = metrics.wrap(candidateFitness);
+        final HillClimbingEngine.BoundedFitness<Integer> scoreFitness = candidateFitness;
+
+        tabuNetworks.add(NetworkFingerprint.of(currentNetwork).hash64());
+        int numWires = currentNetwork.numWires();
+        int initialFitness = currentFitness;
+        ComparisonNetwork bestNetwork = currentNetwork;
+        int bestFitness = currentFitness;
+        long fitnessSum = currentFitness;
+        long evaluations = 1;
+        int accepted = 0;
+        long bestEvaluation = 1;
+
+        for (int step = 0; step < numSteps; step++) {
+            // sample the neighbourhood on this thread, so it only depends on the seed
+            for (int c = 0; c < numCandidates; c++) {
+                int index = rand.nextInt(currentNetwork.size());
+                int top = rand.nextInt(numWires);
+                int bottom = rand.nextInt(numWires);
+                moves[c] = encode(index, Math.min(top, bottom), Math.max(top, bottom));
+            }
+
+            final ComparisonNetwork parent = currentNetwork;
+            final int aspiration = bestFitness;
+            AtomicInteger bound = new AtomicInteger(Integer.MAX_VALUE - 1);
+            IntConsumer score = c -> {
+                ComparisonNetwork candidate = apply(parent, moves[c]);
+                candidates[c] = candidate;
+                tabu[c] = tabuMoves.contains(moves[c]) ||
+                        tabuNetworks.contains(NetworkFingerprint.of(candidate).hash64());
+
+                // a candidate worse than the step's best so far cannot be moved to, and a tabu
+                // one only if it aspires; stopping one past the bound keeps ties exact
+                int cutoff = bound.get() + 1;
+                if (tabu[c])
+                    cutoff = Math.min(cutoff, aspiration);
+                int f = scoreFitness.evaluate(c, cutoff);
+                fitnesses[c] = f;
+                if (f < cutoff)
+                    bound.accumulateAndGet(f, Math::min);
+            };
+            if (pool == null)
+                IntStream.range(0, numCandidates).forEach(score);
+            else
+                pool.submit(() -> IntStream.range(0, numCandidates).parallel().forEach(score)).join();
+
+            // move to the best candidate that is not tabu, or that beats the best network
+            int chosen = -1;
+            for (int c = 0; c < numCandidates; c++) {
+                boolean admissible = !tabu[c] || fitnesses[c] < aspiration;
+                if (admissible && (chosen < 0 || fitnesses[c] < fitnesses[chosen]))
+                    chosen = c;
+            }
+            for (int c = 0; c < numCandidates; c++) {
+                fitnessSum += fitnesses[c];
+                if (metrics != null)
+                    metrics.recordMove(c == chosen, step, currentFitness, fitnesses[c]);
+            }
+            evaluations += numCandidates;
+            if (chosen < 0)
+                continue;
+
+            int index = (int) (moves[chosen] >>> 16);
+            Comparator replaced = currentNetwork.getNetwork().get(index);
+            tabuMoves.add(encode(index, replaced.getTopWire(), replaced.getBottomWire()));
+            if (evaluator != null)
+                evaluator.acceptReplacement(index, comparatorOf(moves[chosen]));
+            currentNetwork = candidates[chosen];
+            currentFitness = fitnesses[chosen];
+            tabuNetworks.add(NetworkFingerprint.of(currentNetwork).hash64());
+            accepted++;
+            if (currentFitness < bestFitness) {
+                bestNetwork = currentNetwork;
+                bestFitness = currentFitness;
+                bestEvaluation = evaluations;
+            }
+        }
+        return new HillClimbingEngine.RestartResult<>(restart, bestNetwork, initialFitness,
+                bestFitness, evaluations, fitnessSum, accepted, bestEvaluation);
+    }
+
+    /**
+     * @param index the index of the comparator to replace
+     * @param top the top wire of the new comparator
+     * @param bottom the bottom wire of the new comparator
+     * @return the move as a single long, (index << 16) | (top << 8) | bottom
+     */
+    private static long encode(int index, int top, int bottom) {
+        return ((long) index << 16) | (top << 8) | bottom;
+    }
+
+    /**
+     * @param network the network to move from, left unchanged
+     * @param move the move, as returned by encode()
+     * @return a copy of the network with the move applied
+     */
+    private static ComparisonNetwork apply(ComparisonNetwork network, long move) {
+        ComparisonNetwork newNetwork = new ComparisonNetwork(network.numWires(),
+                new ArrayList<>(network.getNetwork()));
+        newNetwork.replace((int) (move >>> 16), comparatorOf(move));
+        return newNetwork;
+    }
+
+    /**
+     * @param move the move, as returned by encode()
+     * @return the comparator the move puts in
+     */
+    private static Comparator comparatorOf(long move) {
+        return new Comparator((int) (move >>> 8) & 0xff, (int) move & 0xff);
+    }
+}
@@ -0,0 +1,613 @@
+package experiments;
+
+import environment.ComparisonNetwork;
+import environment.FitnessCache;
+import environment.HillClimbingEngine;
+import environment.IncrementalFitness;
+import environment.LayeredNetwork;
+import environment.NetworkCompiler;
+import environment.NetworkUtilities;
+import environment.SearchMetrics;
+import environment.SimulatedAnnealingEngine;
+import environment.TabuSearchEngine;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a whole grid of experiments from one sweep specification, instead of editing the
+ * constants of RandomNetworksNormal, RandomNetworksHillClimbing and
+ * RandomNetworksSimulatedAnnealing and running them one after another. Search variants that
+ * those experiments do not cover are selected here too.
+ *
+ * The specification is a properties file, given as the only argument:
+ *
+ *   algorithms  = normal, hill-climbing, simulated-annealing, tabu-search
+ *   wires       = 12-16
+ *   sizes       = best            (or a list of sizes; best is NetworkUtilities.bestKnownSize)
+ *   k           = 10, 50, 100, 500, 1000
+ *   m           = 10, 50, 100, 500, 1000
+ *   seed        = 1
+ *   threads     = 8               (defaults to one per core)
+ *   early-abort = false           (bounded evaluation for the local searches; makes the
+ *                                  average fitness a lower bound)
+ *   evaluator   = bit-sliced      (or compiled, see NetworkCompiler, or incremental, see
+ *                                  IncrementalFitness)
+ *   mutation    = uniform         (or dead-first, see NetworkUtilities.deadFirstMutator)
+ *   depth-weight = 0              (added to the fitness for every layer, see LayeredNetwork)
+ *   cache-size  = 65536           (fitnesses each cell keeps in its FitnessCache)
+ *   output      = results/sweep.csv
+ *
+ * Every key is optional; the defaults are the values above (with a random seed). Lists are
+ * separated by commas and may contain ranges such as 12-16. The evaluator, mutation, depth
+ * weight and cache apply to the local searches; tabu search does not use the mutation, and the
+ * incremental evaluator draws its own uniform mutations and, for tabu search, cannot be
+ * combined with a depth weight.
+ *
+ * Every (algorithm, wires, size, K, M) cell is split into its K restarts (for normal, K batches
+ * of M random networks; for simulated annealing, M is the number of proposed moves, cooled by
+ * RandomNetworksSimulatedAnnealing.COOLING; for tabu search, M is
+ * the number of evaluations, made in steps of TABU_CANDIDATES candidates). All restarts run on one
+ * shared pool. At most as many cells as there are threads are open at once, and free threads are
+ * handed to the open cells round-robin, so a large cell cannot starve the others, while cells
+ * still finish (and are written) one after another rather than all at the very end.
+ *
+ * Each cell is appended to the output CSV as soon as its last restart finishes. Cells already in
+ * the output are skipped, so a sweep that was stopped can be continued by running it again. A
+ * cell with a restart that throws is not written, and the runner then exits with status 1 once
+ * the other cells are done, so running it again retries the failed cells.
+ */
+public class ExperimentRunner {
+
+    private static final String CSV_HEADER = "algorithm,wires,size,k,m,seed,best_fitness," +
+            "average_fitness,evaluations,acceptance_rate,cpu_seconds,wall_seconds";
+
+    // the number of candidate moves tabu search scores per step
+    private static final int TABU_CANDIDATES = 32;
+
+    // the number of networks a cell's NetworkCompiler remembers, and how often one must be
+    // evaluated before it is compiled
+    private static final int COMPILER_CAPACITY = 1 << 12;
+    private static final int COMPILE_THRESHOLD = 2;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Properties spec = new Properties();
+        if (args.length > 0) {
+            try (Reader in = Files.newBufferedReader(Paths.get(args[0]))) {
+                spec.load(in);
+            }
+        }
+
+        List<Algorithm> algorithms = new ArrayList<>();
+        for (String name : spec.getProperty("algorithms", "normal, hill-climbing, simulated-annealing, tabu-search").split(","))
+            algorithms.add(Algorithm.named(name.trim()));
+        List<Integer> wires = parseInts(spec.getProperty("wires", "12-16"));
+        String sizes = spec.getProperty("sizes", "best").trim();
+        List<Integer> ks = parseInts(spec.getProperty("k", "10, 50, 100, 500, 1000"));
+        List<Integer> ms = parseInts(spec.getProperty("m", "10, 50, 100, 500, 1000"));
+        long seed = spec.containsKey("seed") ? Long.parseLong(spec.getProperty("seed").trim())
+                : new Random().nextLong();
+        int threads = Integer.parseInt(spec.getProperty("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())).trim());
+        Options options = new Options(
+                Boolean.parseBoolean(spec.getProperty("early-abort", "false").trim()),
+                Evaluator.named(spec.getProperty("evaluator", "bit-sliced").trim()),
+                Mutation.named(spec.getProperty("mutation", "uniform").trim()),
+                Integer.parseInt(spec.getProperty("depth-weight", "0").trim()),
+                Integer.parseInt(spec.getProperty("cache-size", "65536").trim()));
+        if (options.evaluator == Evaluator.INCREMENTAL && options.mutation != Mutation.UNIFORM)
+            throw new IllegalArgumentException("the incremental evaluator only supports uniform mutation");
+        if (options.evaluator == Evaluator.INCREMENTAL && options.depthWeight > 0
+                && algorithms.contains(Algorithm.TABU_SEARCH))
+            throw new IllegalArgumentException("incremental tabu search cannot penalize depth");
+        Path output = Paths.get(spec.getProperty("output", "results/sweep.csv").trim());
+
+        // every cell gets its own seed, drawn in grid order, so a cell's results do not depend
+        // on which other cells are run or skipped
+        Random seeds = new Random(seed);
+        List<Cell> cells = new ArrayList<>();
+        for (Algorithm algorithm : algorithms)
+            for (int numWires : wires)
+                for (int size : sizes.equals("best")
+                        ? List.of(NetworkUtilities.bestKnownSize(numWires)) : parseInts(sizes))
+                    for (int k : ks)
+                        for (int m : ms)
+                            cells.add(new Cell(algorithm, numWires, size, k, m, seeds.nextLong(), options));
+
+        Set<String> done = completedCells(output);
+        Queue<Cell> pending = new ArrayDeque<>();
+        for (Cell cell : cells)
+            if (!done.contains(cell.key()))
+                pending.add(cell);
+        System.out.printf("%d of %d cells to run on %d threads, seed %d, writing to %s%n",
+                pending.size(), cells.size(), threads, seed, output);
+
+        if (output.toAbsolutePath().getParent() != null)
+            Files.createDirectories(output.toAbsolutePath().getParent());
+        boolean writeHeader = !Files.exists(output) || Files.size(output) == 0;
+        int failed;
+        try (BufferedWriter csv = Files.newBufferedWriter(output, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+            if (writeHeader) {
+                csv.write(CSV_HEADER);
+                csv.newLine();
+                csv.flush();
+            }
+            failed = run(pending, threads, csv);
+        }
+        if (failed > 0) {
+            System.err.printf("%d of the cells failed and were not written; run the sweep again to retry them%n",
+                    failed);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the restarts of every cell on a shared pool, keeping at most threads cells open and
+     * giving free threads to the open cells round-robin. A cell's engines are only created when
+     * it is opened, and are released once its last restart finishes.
+     *
+     * @param pending the cells to run, in order
+     * @param threads the number of threads in the pool
+     * @param csv the output every finished cell is written to
+     * @return the number of cells with a restart that failed, which are not written
+     * @throws InterruptedException if interrupted while waiting for a thread
+     */
+    private static int run(Queue<Cell> pending, int threads, BufferedWriter csv)
+            throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Semaphore freeThreads = new Semaphore(threads);
+        AtomicInteger failedCells = new AtomicInteger();
+        List<Cell> open = new ArrayList<>();
+        int next = 0;
+        try {
+            while (!pending.isEmpty() || !open.isEmpty()) {
+                while (open.size() < threads && !pending.isEmpty()) {
+                    Cell cell = pending.poll();
+                    cell.open();
+                    open.add(cell);
+                }
+
+                freeThreads.acquire();
+                next %= open.size();
+                Cell cell = open.get(next);
+                int restart = cell.nextRestart++;
+                if (cell.nextRestart == cell.k)
+                    open.remove(next);
+                else
+                    next++;
+
+                pool.execute(() -> {
+                    try {
+                        cell.runRestart(restart, csv);
+                    } catch (RuntimeException e) {
+                        System.err.printf("%s restart %d failed: %s%n", cell.key(), restart, e);
+                        e.printStackTrace();
+                        if (cell.fail())
+                            failedCells.incrementAndGet();
+                    } finally {
+                        freeThreads.release();
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+        return failedCells.get();
+    }
+
+    /**
+     * @param output a CSV written by an earlier sweep
+     * @return the keys of the cells already in it
+     * @throws IOException if it cannot be read
+     */
+    private static Set<String> completedCells(Path output) throws IOException {
+        Set<String> done = new HashSet<>();
+        if (!Files.exists(output))
+            return done;
+        for (String line : Files.readAllLines(output)) {
+            String[] fields = line.split(",");
+            if (fields.length > 5 && !line.equals(CSV_HEADER))
+                done.add(String.join(",", fields[0], fields[1], fields[2], fields[3], fields[4]));
+        }
+        return done;
+    }
+
+    /**
+     * @param list a comma-separated list of integers and ranges such as 12-16
+     * @return the integers, in order
+     */
+    private static List<Integer> parseInts(String list) {
+        List<Integer> values = new ArrayList<>();
+        for (String item : list.split(",")) {
+            item = item.trim();
+            int dash = item.indexOf('-', 1);
+            if (dash < 0) {
+                values.add(Integer.parseInt(item));
+            } else {
+                int last = Integer.parseInt(item.substring(dash + 1).trim());
+                for (int i = Integer.parseInt(item.substring(0, dash).trim()); i <= last; i++)
+                    values.add(i);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * The algorithms a sweep can run.
+     */
+    enum Algorithm {
+        NORMAL("normal"),
+        HILL_CLIMBING("hill-climbing"),
+        SIMULATED_ANNEALING("simulated-annealing"),
+        TABU_SEARCH("tabu-search");
+
+        private final String name;
+
+        Algorithm(String name) {
+            this.name = name;
+        }
+
+        static Algorithm named(String name) {
+            for (Algorithm algorithm : values())
+                if (algorithm.name.equals(name))
+                    return algorithm;
+            throw new IllegalArgumentException("unknown algorithm: " + name);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * The ways a sweep can count unsorted outputs.
+     */
+    enum Evaluator {
+        BIT_SLICED("bit-sliced"),
+        COMPILED("compiled"),
+        INCREMENTAL("incremental");
+
+        private final String name;
+
+        Evaluator(String name) {
+            this.name = name;
+        }
+
+        static Evaluator named(String name) {
+            for (Evaluator evaluator : values())
+                if (evaluator.name.equals(name))
+                    return evaluator;
+            throw new IllegalArgumentException("unknown evaluator: " + name);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * The ways a sweep can mutate networks.
+     */
+    enum Mutation {
+        UNIFORM("uniform"),
+        DEAD_FIRST("dead-first");
+
+        private final String name;
+
+        Mutation(String name) {
+            this.name = name;
+        }
+
+        static Mutation named(String name) {
+            for (Mutation mutation : values())
+                if (mutation.name.equals(name))
+                    return mutation;
+            throw new IllegalArgumentException("unknown mutation: " + name);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * The settings of a sweep that apply to every cell.
+     */
+    static final class Options {
+
+        private final boolean earlyAbort;
+        private final Evaluator evaluator;
+        private final Mutation mutation;
+        private final int depthWeight;
+        private final int cacheSize;
+
+        Options(boolean earlyAbort, Evaluator evaluator, Mutation mutation, int depthWeight, int cacheSize) {
+            if (depthWeight < 0)
+                throw new IllegalArgumentException("depth weight must not be negative, not " + depthWeight);
+            this.earlyAbort = earlyAbort;
+            this.evaluator = evaluator;
+            this.mutation = mutation;
+            this.depthWeight = depthWeight;
+            this.cacheSize = cacheSize;
+        }
+    }
+
+    /**
+     * One (algorithm, wires, size, K, M) cell of a sweep, which collects the outcomes of its K
+     * restarts as they finish and writes itself once it has them all. The metrics, fitness cache
+     * and engine only exist while the cell is open, so a sweep holds them for at most as many
+     * cells as it has threads.
+     */
+    private static final class Cell {
+
+        private final Algorithm algorithm;
+        private final int numWires;
+        private final int size;
+        private final int k;
+        private final int m;
+        private final long seed;
+        private final Options options;
+
+        // set by open() on the scheduling thread before any restart runs, and cleared by the
+        // last restart to finish
+        private long[] restartSeeds;
+        private SearchMetrics metrics;
+        private HillClimbingEngine<ComparisonNetwork> engine;
+        private SimulatedAnnealingEngine<ComparisonNetwork> annealing;
+        private TabuSearchEngine tabuSearch;
+
+        // only used by the scheduling thread
+        private int nextRestart;
+
+        // guarded by this
+        private Outcome[] outcomes;
+        private int finished;
+        private boolean failed;
+        private long cpuNanos;
+        private long startNanos = -1;
+
+        Cell(Algorithm algorithm, int numWires, int size, int k, int m, long seed, Options options) {
+            this.algorithm = algorithm;
+            this.numWires = numWires;
+            this.size = size;
+            this.k = k;
+            this.m = m;
+            this.seed = seed;
+            this.options = options;
+        }
+
+        /**
+         * Creates the restart seeds, metrics, fitness cache and engine of the cell.
+         */
+        void open() {
+            outcomes = new Outcome[k];
+            metrics = new SearchMetrics();
+
+            // the same restart seeds as HillClimbingEngine.run(k, m, seed)
+            Random seeds = new Random(seed);
+            restartSeeds = new long[k];
+            for (int i = 0; i < k; i++)
+                restartSeeds[i] = seeds.nextLong();
+
+            IncrementalFitness incremental = null;
+            HillClimbingEngine.BoundedFitness<ComparisonNetwork> unsortedCount;
+            switch (options.evaluator) {
+                case COMPILED:
+                    unsortedCount = new NetworkCompiler(COMPILER_CAPACITY, COMPILE_THRESHOLD).fitness();
+                    break;
+                case INCREMENTAL:
+                    incremental = new IncrementalFitness();
+                    unsortedCount = incremental;
+                    break;
+                default:
+                    unsortedCount = (network, cutoff) -> network.countUnsorted(cutoff);
+                    break;
+            }
+            HillClimbingEngine.BoundedFitness<ComparisonNetwork> penalized =
+                    LayeredNetwork.depthPenalized(unsortedCount, options.depthWeight);
+            FitnessCache cache = new FitnessCache(options.cacheSize);
+            HillClimbingEngine.BoundedFitness<ComparisonNetwork> fitness = options.earlyAbort
+                    ? cache.wrap(penalized)
+                    : (network, cutoff) -> cache.getOrCompute(network,
+                            n -> penalized.evaluate(n, Integer.MAX_VALUE));
+
+            BiFunction<ComparisonNetwork, Random, ComparisonNetwork> mutator;
+            if (incremental != null)
+                mutator = incremental::mutate;
+            else if (options.mutation == Mutation.DEAD_FIRST)
+                mutator = NetworkUtilities.deadFirstMutator();
+            else
+                mutator = NetworkUtilities::copyMutate;
+
+            if (algorithm == Algorithm.HILL_CLIMBING) {
+                engine = new HillClimbingEngine<>(
+                        r -> NetworkUtilities.createRandomNetwork(numWires, size, r),
+                        mutator, fitness, 1);
+                engine.setMetrics(metrics);
+            } else {
+                engine = null;
+            }
+            if (algorithm == Algorithm.SIMULATED_ANNEALING) {
+                annealing = new SimulatedAnnealingEngine<>(
+                        r -> NetworkUtilities.createRandomNetwork(numWires, size, r),
+                        mutator, fitness, RandomNetworksSimulatedAnnealing.COOLING, 1);
+                annealing.setMetrics(metrics);
+            } else {
+                annealing = null;
+            }
+            if (algorithm == Algorithm.TABU_SEARCH) {
+                // without a fitness, tabu search scores its candidates incrementally itself
+                tabuSearch = new TabuSearchEngine(
+                        r -> NetworkUtilities.createRandomNetwork(numWires, size, r),
+                        incremental != null ? null : fitness, 1);
+                tabuSearch.setCandidates(TABU_CANDIDATES);
+                tabuSearch.setMetrics(metrics);
+            } else {
+                tabuSearch = null;
+            }
+        }
+
+        /**
+         * @return the cell's parameters, as the first five columns of its CSV line
+         */
+        String key() {
+            return String.join(",", algorithm.toString(), String.valueOf(numWires),
+                    String.valueOf(size), String.valueOf(k), String.valueOf(m));
+        }
+
+        /**
+         * Runs one restart on the calling thread, writing the cell if it was the last.
+         */
+        void runRestart(int restart, BufferedWriter csv) {
+            synchronized (this) {
+                if (startNanos < 0)
+                    startNanos = System.nanoTime();
+            }
+            long cpuStart = THREADS.getCurrentThreadCpuTime();
+            Outcome outcome;
+            switch (algorithm) {
+                case NORMAL:
+                    outcome = RandomNetworksNormal.sample(numWires, size, m, new Random(restartSeeds[restart]));
+                    break;
+                default:
+                    HillClimbingEngine.RestartResult<ComparisonNetwork> result =
+                            algorithm == Algorithm.HILL_CLIMBING
+                                    ? engine.runRestart(restart, m, restartSeeds[restart])
+                                    : algorithm == Algorithm.SIMULATED_ANNEALING
+                                    ? annealing.runRestart(restart, m, restartSeeds[restart])
+                                    : tabuSearch.runRestart(restart, Math.max(1, m / TABU_CANDIDATES),
+                                            restartSeeds[restart]);
+                    outcome = new Outcome(result.getBestNetwork(), result.getBestFitness(),
+                            result.getFitnessSum(), result.getEvaluations());
+                    break;
+            }
+            long cpu = THREADS.getCurrentThreadCpuTime() - cpuStart;
+
+            String line;
+            synchronized (this) {
+                outcomes[restart] = outcome;
+                cpuNanos += cpu;
+                if (++finished < k || failed) {
+                    if (finished == k)
+                        close();
+                    return;
+                }
+                line = csvLine();
+                close();
+            }
+            synchronized (csv) {
+                try {
+                    csv.write(line);
+                    csv.newLine();
+                    csv.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            System.out.println(line);
+        }
+
+        /**
+         * Records that a restart failed, so that the cell is not written.
+         *
+         * @return true if this is the first restart of the cell to fail
+         */
+        synchronized boolean fail() {
+            boolean first = !failed;
+            failed = true;
+            if (++finished == k)
+                close();
+            return first;
+        }
+
+        /**
+         * Releases everything open() created, once every restart has finished. Must be called
+         * holding the lock.
+         */
+        private void close() {
+            restartSeeds = null;
+            metrics = null;
+            engine = null;
+            annealing = null;
+            tabuSearch = null;
+            outcomes = null;
+        }
+
+        /**
+         * @return the CSV line of the finished cell
+         */
+        private String csvLine() {
+            int bestFitness = Integer.MAX_VALUE;
+            long fitnessSum = 0;
+            long evaluations = 0;
+            for (Outcome outcome : outcomes) {
+                bestFitness = Math.min(bestFitness, outcome.getFitness());
+                fitnessSum += outcome.getFitnessSum();
+                evaluations += outcome.getEvaluations();
+            }
+            double acceptanceRate = algorithm == Algorithm.NORMAL ? Double.NaN : metrics.getAcceptanceRate();
+            return String.format(Locale.ROOT, "%s,%d,%d,%.3f,%d,%.4f,%.3f,%.3f", key(), seed, bestFitness,
+                    (double) fitnessSum / evaluations, evaluations, acceptanceRate, cpuNanos / 1e9,
+                    (System.nanoTime() - startNanos) / 1e9);
+        }
+    }
+
+    /**
+     * The result of one restart of an experiment: the network it kept and its fitness, and the
+     * sum and number of every fitness it evaluated.
+     */
+    static final class Outcome {
+
+        private final ComparisonNetwork network;
+        private final int fitness;
+        private final long fitnessSum;
+        private final long evaluations;
+
+        Outcome(ComparisonNetwork network, int fitness, long fitnessSum, long evaluations) {
+            this.network = network;
+            this.fitness = fitness;
+            this.fitnessSum = fitnessSum;
+            this.evaluations = evaluations;
+        }
+
+        ComparisonNetwork getNetwork() { return network; }
+
+        int getFitness() { return fitness; }
+
+        long getFitnessSum() { return fitnessSum; }
+
+        long getEvaluations() { return evaluations; }
+
+        double getAverageFitness() { return (double) fitnessSum / evaluations; }
+    }
+}
@@ -0,0 +1,98 @@
+package experiments;
+
+import environment.ComparisonNetwork;
+import environment.HillClimbingEngine;
+import environment.IslandGeneticEngine;
+import environment.LayeredNetwork;
+import environment.NetworkUtilities;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * In this setting, we use an island-model genetic algorithm for 12-16 wires of size equal to
+ * the smallest known sorting networks (e.g, for 16 wires 60 comparisons).
+ *
+ * Each island (one per core) evolves its own population of POPULATION_SIZE random networks.
+ * Children are made by splicing the prefix of one parent onto the suffix of another, or by
+ * exchanging a range of layers between them, and are then mutated the same way hill climbing
+ * mutates (on a copy). Every MIGRATION_INTERVAL generations each island sends its NUM_MIGRANTS
+ * best networks to the next island. A generation's children are scored as one batch.
+ *
+ * The number of generations is chosen so that the run makes about as many evaluations as
+ * RandomNetworksHillClimbing with K = 5 and M = 100,000. Since the GA and hill climbing do very
+ * different work per evaluation, we compare them by the best fitness reached per CPU-hour: with
+ * COMPARE_HILL_CLIMBING set, hill climbing is run with that K and M on the same machine, and the
+ * process CPU time of both is printed.
+ *
+ * When we refer to fitness, we mean the number of unsorted outputs generated from all binary
+ * sequences ran on a given comparison network.
+ */
+public class IslandGeneticAlgorithm {
+
+    private static final int POPULATION_SIZE = 100;
+    private static final int NUM_EVALUATIONS = 5 * 100000;
+    private static final int MIGRATION_INTERVAL = 20;
+    private static final int NUM_MIGRANTS = 2;
+    private static final int MIN_WIRES = 12;
+    private static final int MAX_WIRES = 17;
+    private static final boolean COMPARE_HILL_CLIMBING = true;
+    private static final boolean PRINT_DATA_FLAG = false;
+    private static final Random rand = new Random();
+
+    private static final com.sun.management.OperatingSystemMXBean OS =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+    public static void main(String[] args) {
+        int numIslands = Runtime.getRuntime().availableProcessors();
+        int numGenerations = Math.max(1, NUM_EVALUATIONS / (numIslands * POPULATION_SIZE));
+
+        // perform experiment for wire sizes of 12 - 16
+        for (int i = MIN_WIRES; i < MAX_WIRES; i++) {
+            final int numWires = i;
+            final int size = NetworkUtilities.bestKnownSize(i);
+
+            List<IslandGeneticEngine.Crossover<ComparisonNetwork>> crossovers =
+                    List.of(NetworkUtilities::spliceCrossover, NetworkUtilities::layerCrossover);
+            IslandGeneticEngine<ComparisonNetwork> engine = new IslandGeneticEngine<>(
+                    r -> NetworkUtilities.createRandomNetwork(numWires, size, r),
+                    NetworkUtilities::copyMutate, crossovers, ComparisonNetwork::countUnsorted,
+                    numIslands);
+            engine.setMigration(MIGRATION_INTERVAL, NUM_MIGRANTS);
+
+            long cpuStart = OS.getProcessCpuTime();
+            IslandGeneticEngine.Result<ComparisonNetwork> result =
+                    engine.run(POPULATION_SIZE, numGenerations, rand.nextLong());
+            double cpuHours = (OS.getProcessCpuTime() - cpuStart) / 3.6e12;
+
+            for (IslandGeneticEngine.IslandResult<ComparisonNetwork> island : result.getIslands())
+                System.out.printf("Island %d on %d wires: best fitness %d (from %d)%n",
+                        island.getIsland(), i, island.getBestFitness(), island.getInitialFitness());
+            System.out.printf("GA best fitness on %d wires with size %d: %d after %d evaluations, " +
+                    "%.4f CPU-hours%n", i, size, result.getBestFitness(), result.getEvaluations(), cpuHours);
+
+            if (COMPARE_HILL_CLIMBING) {
+                HillClimbingEngine<ComparisonNetwork> hillClimbing = new HillClimbingEngine<>(
+                        r -> NetworkUtilities.createRandomNetwork(numWires, size, r),
+                        NetworkUtilities::copyMutate,
+                        (network, cutoff) -> LayeredNetwork.depthPenalizedFitness(network, 0, cutoff));
+                cpuStart = OS.getProcessCpuTime();
+                HillClimbingEngine.Result<ComparisonNetwork> hillClimbingResult =
+                        hillClimbing.run(5, NUM_EVALUATIONS / 5, rand.nextLong());
+                cpuHours = (OS.getProcessCpuTime() - cpuStart) / 3.6e12;
+                System.out.printf("Hill climbing best fitness on %d wires with size %d: %d after %d " +
+                        "evaluations, %.4f CPU-hours%n", i, size, hillClimbingResult.getBestFitness(),
+                        NUM_EVALUATIONS + 5, cpuHours);
+            }
+            System.out.println();
+
+            if (PRINT_DATA_FLAG) {
+                ComparisonNetwork bestOverallNetwork = result.getBestNetwork();
+                NetworkUtilities.printUnsortedOutputs(bestOverallNetwork.unsortedOutputSet());
+                System.out.printf("The %d-comparison network that produced these outputs:%n", size);
+                System.out.println(bestOverallNetwork);
+            }
+        }
+    }
+}
@@ -1,17 +1,22 @@
 package experiments;
 
-import environment.BinarySequence;
 import environment.ComparisonNetwork;
 import environment.NetworkUtilities;
+import environment.OutputSetStore;
 
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.file.Paths;
 import java.util.Random;
-import java.util.Set;
 
 /**
  * A program that produces a number (specified by the user) of random networks on 16 wires with
  * 28 comparisons whose input is the unsorted outputs of Green32. The best network (the network
  * with the smallest amount of unsorted outputs) is then shown.
  *
+ * Green32's outputs are kept in an OutputSetStore under STORE_DIRECTORY, so they are only
+ * computed by the first run.
+ *
  * BEST FITNESS: 29 unsorted outputs
  *
  * @author Jake Nocentino
@@ -22,25 +27,29 @@ public class RandomCompleter {
     private static final int NUM_NETWORKS = 1000000;
     private static final int NUM_COMPARATORS = 28;
     private static final int NUM_WIRES = 16;
+    private static final String STORE_DIRECTORY = "output-sets";
     private static Random rand = new Random();
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
 
         ComparisonNetwork bestNetwork = new ComparisonNetwork(NUM_WIRES);
-        Set<BinarySequence> unsortedGreenOutputs = NetworkUtilities.getGreen32Outputs();
-        Set<BinarySequence> bestUnsortedOutputs = unsortedGreenOutputs;
+        OutputSetStore store = new OutputSetStore(Paths.get(STORE_DIRECTORY));
+        LongBuffer unsortedGreenOutputs = NetworkUtilities.getGreen32Outputs(store);
+        int bestFitness = unsortedGreenOutputs.limit();
 
         for (int i = 0; i < NUM_NETWORKS; i++) {
             //ComparisonNetwork randomNetwork = NetworkUtilities.createRandomNetwork(NUM_WIRES, NUM_COMPARATORS);
             ComparisonNetwork randomNetwork = createRandomNetwork();
-            Set<BinarySequence> unsortedOutputs = randomNetwork.operateOnTheseBinary(unsortedGreenOutputs);
-            if (unsortedOutputs.size() < bestUnsortedOutputs.size()) {
-                bestUnsortedOutputs = unsortedOutputs;
+
+            // stop evaluating as soon as the network is known to be no better than the best
+            int fitness = randomNetwork.countUnsorted(unsortedGreenOutputs, bestFitness);
+            if (fitness < bestFitness) {
+                bestFitness = fitness;
                 bestNetwork = randomNetwork;
             }
         }
         System.out.println("Best unsorted outputs from random completion on Green32:\n");
-        NetworkUtilities.printUnsortedOutputs(bestUnsortedOutputs);
+        NetworkUtilities.printUnsortedOutputs(bestNetwork.unsortedOutputSet(unsortedGreenOutputs));
         System.out.println("The 28-comparison network that produced these outputs:\n");
         System.out.println(bestNetwork);
     }
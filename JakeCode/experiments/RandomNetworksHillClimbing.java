@@ -1,13 +1,19 @@
 package experiments;
 
-import environment.BinarySequence;
-import environment.Comparator;
 import environment.ComparisonNetwork;
+import environment.HillClimbingEngine;
+import environment.IncrementalFitness;
+import environment.NetworkCodec;
+import environment.NetworkFile;
 import environment.NetworkUtilities;
+import environment.RedundancyAnalysis;
+import environment.SearchMetrics;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Random;
-import java.util.Set;
 
 /**
  * In this setting, we use hill climbing for 12-16 wires of size equal to the smallest known
@@ -16,7 +22,14 @@ import java.util.Set;
  * For hill climbing, for K times, we construct a random network and mutate it for K iterations.
  * KM should then be approximate to N, which is the number of random networks created in
  * RandomNetworksNormal. This is so we "preserve" the same amount of randomness being applied
- * to each method.
+ * to each method. The K restarts are independent, so HillClimbingEngine runs them in parallel,
+ * one restart per core.
+ *
+ * Mutants are scored incrementally (see IncrementalFitness), which gives the same results as
+ * scoring them in full. Every run is checkpointed to CHECKPOINT_DIRECTORY, so running the
+ * experiment again with the same K and M resumes where it stopped, and the best network of every
+ * restart is appended to CANDIDATES_FILE. Other search variants (tabu search, dead-first
+ * mutation, early abort, depth penalties) are run through ExperimentRunner.
  *
  * When we refer to fitness, we mean the number of unsorted outputs generated from all binary
  * sequences ran on a given comparison network.
@@ -116,116 +129,65 @@ public class RandomNetworksHillClimbing {
     private static final int MIN_WIRES = 12;
     private static final int MAX_WIRES = 17;
     private static final boolean PRINT_DATA_FLAG = false;
+    private static final Path CHECKPOINT_DIRECTORY = Paths.get("checkpoints");
+    private static final long CHECKPOINT_INTERVAL_MS = 30000;
+    private static final long REPORT_INTERVAL_MS = 10000;
+    private static final Path CANDIDATES_FILE = Paths.get("candidates", "hill-climbing.networks");
     private static final Random rand = new Random();
 
-    public static void main(String[] args) {
-
-        // map each num_wires to its best known length
-        HashMap<Integer, Integer> wiresToSize = new HashMap<>();
-        for (int i = MIN_WIRES; i < MAX_WIRES; i++) {
-            switch (i) {
-                case 12:
-                    wiresToSize.put(i, 39);
-                    break;
-                case 13:
-                    wiresToSize.put(i, 45);
-                    break;
-                case 14:
-                    wiresToSize.put(i, 51);
-                    break;
-                case 15:
-                    wiresToSize.put(i, 56);
-                    break;
-                case 16:
-                    wiresToSize.put(i, 60);
-                    break;
-            }
-        }
+    public static void main(String[] args) throws IOException {
 
         // perform experiment for wire sizes of 12 - 16
         for (int i = MIN_WIRES; i < MAX_WIRES; i++) {
-            ComparisonNetwork bestOverallNetwork = createRandomNetwork(i, wiresToSize.get(i));
-            Set<BinarySequence> bestOverallOutputs = bestOverallNetwork.operateOnAllBinary();
-            float avgFitness = 0;
-
-            // perform hill climbing NUM_NETWORKS (K) times
-            for (int k = 0; k < NUM_ITERATIONS; k++) {
-                System.out.printf("Iteration %d on %d wires%n", k, i);
-                ComparisonNetwork bestCurrentNetwork = createRandomNetwork(i, wiresToSize.get(i));
-                Set<BinarySequence> bestCurrentOutputs = bestCurrentNetwork.operateOnAllBinary();
-                avgFitness += bestCurrentOutputs.size();
-
-                if (k == 0) {
-                    bestOverallNetwork = bestCurrentNetwork;
-                    bestOverallOutputs = bestCurrentOutputs;
-                }
-
-                // main hill-climbing algorithm done here
-                for (int m = 0; m < NUM_MUTATIONS; m++) {
-                    ComparisonNetwork mutatedNetwork = mutate(bestCurrentNetwork);
-                    Set<BinarySequence> mutatedOutputs = mutatedNetwork.operateOnAllBinary();
-                    avgFitness += mutatedOutputs.size();
-                    if (mutatedOutputs.size() < bestCurrentOutputs.size()) {
-                        bestCurrentNetwork = mutatedNetwork;
-                        bestCurrentOutputs = mutatedOutputs;
-                    }
-                }
-                if (bestCurrentOutputs.size() < bestOverallOutputs.size()) {
-                    bestOverallNetwork = bestCurrentNetwork;
-                    bestOverallOutputs =  bestCurrentOutputs;
-                }
+            final int numWires = i;
+            final int size = NetworkUtilities.bestKnownSize(i);
+
+            // perform hill climbing NUM_ITERATIONS (K) times, one restart per core
+            IncrementalFitness fitness = new IncrementalFitness();
+            HillClimbingEngine<ComparisonNetwork> engine = new HillClimbingEngine<>(
+                    r -> NetworkUtilities.createRandomNetwork(numWires, size, r), fitness::mutate, fitness);
+            SearchMetrics metrics = new SearchMetrics();
+            engine.setMetrics(metrics);
+            HillClimbingEngine.Result<ComparisonNetwork> result;
+            SearchMetrics.Reporter reporter = metrics.startReporter(REPORT_INTERVAL_MS, System.out);
+            try {
+                result = engine.run(NUM_ITERATIONS, NUM_MUTATIONS, rand.nextLong(),
+                        CHECKPOINT_DIRECTORY.resolve("hill-climbing-" + numWires + ".ckpt"),
+                        NetworkCodec.COMPARISON_NETWORK, CHECKPOINT_INTERVAL_MS);
+            } finally {
+                reporter.close();
             }
 
+            for (HillClimbingEngine.RestartResult<ComparisonNetwork> restart : result.getRestarts())
+                System.out.printf("Iteration %d on %d wires: best fitness %d after %d evaluations%n",
+                        restart.getRestart(), i, restart.getBestFitness(), restart.getEvaluationsToBest());
 
-            avgFitness /= NUM_ITERATIONS * NUM_MUTATIONS; // final step for calculating avg fitness
+            Files.createDirectories(CANDIDATES_FILE.getParent());
+            try (NetworkFile.Writer candidates = NetworkFile.newWriter(CANDIDATES_FILE, true)) {
+                for (HillClimbingEngine.RestartResult<ComparisonNetwork> restart : result.getRestarts())
+                    candidates.write(restart.getBestNetwork(),
+                            restart.getBestNetwork().unsortedOutputSet().size());
+            }
 
             System.out.printf("Best fitness on %d wires with size %d: %d%n", i,
-                    wiresToSize.get(i), bestOverallOutputs.size());
+                    size, result.getBestFitness());
             System.out.printf("Average fitness on %d wires with size %d: %.3f%n%n", i,
-                    wiresToSize.get(i), avgFitness);
+                    size, result.getAverageFitness());
+            System.out.printf("Depth of the best network on %d wires: %d%n", i,
+                    result.getBestNetwork().depth());
+            RedundancyAnalysis redundancy = RedundancyAnalysis.of(result.getBestNetwork());
+            System.out.printf("Dead comparators in the best network on %d wires: %d%n", i,
+                    redundancy.numDead());
 
             if (PRINT_DATA_FLAG) {
-                NetworkUtilities.printUnsortedOutputs(bestOverallOutputs);
-                System.out.printf("The %d-comparison network that produced these outputs:%n", wiresToSize.get(i));
+                ComparisonNetwork bestOverallNetwork = result.getBestNetwork();
+                NetworkUtilities.printUnsortedOutputs(bestOverallNetwork.unsortedOutputSet());
+                System.out.printf("The %d-comparison network that produced these outputs:%n", size);
                 System.out.println(bestOverallNetwork);
+                System.out.printf("The same network without its %d dead comparators:%n",
+                        redundancy.numDead());
+                System.out.println(redundancy.pruned());
             }
         }
     }
-
-    /**
-     * Creates a ComparisonNetwork containing randomly assigned comparators.
-     *
-     * @return a random ComparisonNetwork object
-     */
-    private static ComparisonNetwork createRandomNetwork(int numWires, int numComparators) {
-        ComparisonNetwork randomNetwork = new ComparisonNetwork(numWires);
-        for (int i = 0; i < numComparators; i++) {
-            int randI = rand.nextInt(i + 1);
-            int randTop = rand.nextInt(numWires);
-            int randBottom = rand.nextInt(numWires);
-            randomNetwork.addComparator(randI, randTop, randBottom);
-        }
-        return randomNetwork;
-    }
-
-    /**
-     * A method that mutates a network for hill-climbing algorithms.
-     *
-     * The mutation of a comparison network is defined by choosing an existing comparator within
-     * the network at random, creating a new comparator with randomly initialized top and bottom
-     * wire indices, and replacing the previously chosen existing comparator with the newly
-     * created comparator.
-     *
-     * @param networkToMutate the network to mutate
-     * @return a new network representing the mutation performed upon the parameter network
-     */
-    private static ComparisonNetwork mutate(ComparisonNetwork networkToMutate) {
-        ComparisonNetwork newNetwork = new ComparisonNetwork(networkToMutate.numWires(), networkToMutate.getNetwork());
-        int randComparatorIndex = rand.nextInt(networkToMutate.size());
-        int topIndex = rand.nextInt(networkToMutate.numWires());
-        int bottomIndex = rand.nextInt(networkToMutate.numWires());
-        Comparator mutatedComparator = new Comparator(topIndex, bottomIndex);
-        newNetwork.replace(randComparatorIndex, mutatedComparator);
-        return newNetwork;
-    }
 }
@@ -1,13 +1,9 @@
 package experiments;
 
-import environment.BinarySequence;
 import environment.ComparisonNetwork;
 import environment.NetworkUtilities;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Random;
-import java.util.Set;
 
 /**
  * In this setting, we create random networks for 12-16 wires of size equal to the smallest known
@@ -58,77 +54,48 @@ public class RandomNetworksNormal {
 
     public static void main(String[] args) {
 
-        // map each num_wires to its best known length
-        HashMap<Integer, Integer> wiresToSize = new HashMap<>();
-        for (int i = MIN_WIRES; i < MAX_WIRES; i++) {
-            switch (i) {
-                case 12:
-                    wiresToSize.put(i, 39);
-                    break;
-                case 13:
-                    wiresToSize.put(i, 45);
-                    break;
-                case 14:
-                    wiresToSize.put(i, 51);
-                    break;
-                case 15:
-                    wiresToSize.put(i, 56);
-                    break;
-                case 16:
-                    wiresToSize.put(i, 60);
-                    break;
-            }
-        }
-
         // perform experiment for wire sizes of 12 - 16
         for (int i = MIN_WIRES; i < MAX_WIRES; i++) {
-            ComparisonNetwork bestNetwork = new ComparisonNetwork(i);
-            Set<BinarySequence> bestUnsortedOutputs = new HashSet<>();
-            float avgFitness = 0;
+            int size = NetworkUtilities.bestKnownSize(i);
 
             // create NUM_NETWORKS amount of random networks
-            for (int j = 0; j < NUM_NETWORKS; j++) {
-                ComparisonNetwork randomNetwork = createRandomNetwork(i, wiresToSize.get(i));
-                Set<BinarySequence> unsortedOutputs = randomNetwork.operateOnAllBinary();
-                avgFitness += unsortedOutputs.size();
-                if (j == 0) {
-                    bestUnsortedOutputs = unsortedOutputs; // make first output the best
-                    bestNetwork = randomNetwork;
-                }
-                if (unsortedOutputs.size() < bestUnsortedOutputs.size()) {
-                    bestUnsortedOutputs = unsortedOutputs;
-                    bestNetwork = randomNetwork;
-                }
-            }
-
-            avgFitness /= NUM_NETWORKS; // final step for calculating avg fitness
+            ExperimentRunner.Outcome outcome = sample(i, size, NUM_NETWORKS, rand);
 
             System.out.printf("Best fitness on %d wires with size %d: %d%n", i,
-                    wiresToSize.get(i), bestUnsortedOutputs.size());
+                    size, outcome.getFitness());
             System.out.printf("Average fitness on %d wires with size %d: %.3f%n%n", i,
-                    wiresToSize.get(i), avgFitness);
+                    size, outcome.getAverageFitness());
 
             if (PRINT_DATA_FLAG) {
-                NetworkUtilities.printUnsortedOutputs(bestUnsortedOutputs);
-                System.out.printf("The %d-comparison network that produced these outputs:%n", wiresToSize.get(i));
-                System.out.println(bestNetwork);
+                NetworkUtilities.printUnsortedOutputs(outcome.getNetwork().unsortedOutputSet());
+                System.out.printf("The %d-comparison network that produced these outputs:%n", size);
+                System.out.println(outcome.getNetwork());
             }
         }
     }
 
     /**
-     * Creates a ComparisonNetwork containing randomly assigned comparators.
+     * Creates random networks and keeps the best of them.
      *
-     * @return a random ComparisonNetwork object
+     * @param numWires the number of wires in the networks
+     * @param size the number of comparators in the networks
+     * @param numNetworks the number of networks to create
+     * @param rand the Random to draw networks from
+     * @return the best network created and the fitnesses of every network
      */
-    private static ComparisonNetwork createRandomNetwork(int numWires, int numComparators) {
-        ComparisonNetwork randomNetwork = new ComparisonNetwork(numWires);
-        for (int i = 0; i < numComparators; i++) {
-            int randI = rand.nextInt(i + 1);
-            int randTop = rand.nextInt(numWires);
-            int randBottom = rand.nextInt(numWires);
-            randomNetwork.addComparator(randI, randTop, randBottom);
+    static ExperimentRunner.Outcome sample(int numWires, int size, int numNetworks, Random rand) {
+        ComparisonNetwork bestNetwork = null;
+        int bestFitness = Integer.MAX_VALUE;
+        long fitnessSum = 0;
+        for (int j = 0; j < numNetworks; j++) {
+            ComparisonNetwork randomNetwork = NetworkUtilities.createRandomNetwork(numWires, size, rand);
+            int fitness = randomNetwork.unsortedOutputSet().size();
+            fitnessSum += fitness;
+            if (fitness < bestFitness) {
+                bestFitness = fitness;
+                bestNetwork = randomNetwork;
+            }
         }
-        return randomNetwork;
+        return new ExperimentRunner.Outcome(bestNetwork, bestFitness, fitnessSum, numNetworks);
     }
 }
@@ -1,23 +1,38 @@
 package experiments;
 
-import environment.BinarySequence;
 import environment.ComparisonNetwork;
+import environment.CoolingSchedule;
+import environment.HillClimbingEngine;
+import environment.LayeredNetwork;
 import environment.NetworkUtilities;
+import environment.SearchMetrics;
+import environment.SimulatedAnnealingEngine;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Random;
-import java.util.Set;
+import java.util.function.IntFunction;
 
 /**
  * In this setting, we use simulated annealing for 12-16 wires of size equal to the smallest known
  * sorting networks (e.g, for 16 wires 60 comparisons).
  *
- * For simulated annealing, for K times, we construct a random network and mutate it for K
+ * For simulated annealing, for K times, we construct a random network and mutate it for M
  * iterations. KM should then be approximate to N, which is the number of random networks created
  * in RandomNetworksNormal. This is so we "preserve" the same amount of randomness being applied
  * to each method.
  *
+ * Each run proposes a mutant of its current network (a hill climbing mutation, made on a copy)
+ * and keeps it by the Metropolis rule at a temperature that cools by the COOLING schedule, while
+ * remembering the best network it has seen (see SimulatedAnnealingEngine). Mutants are scored
+ * with the early-abort evaluator, stopping as soon as they are sure to be rejected. With
+ * COMPARE_HILL_CLIMBING set, hill climbing is run from the same starting networks for the same
+ * number of evaluations, and both report the fitness reached per evaluation.
+ *
+ * The results below were taken with the earlier scheme, which proposed a whole new random
+ * network at every step rather than a mutant of the current one.
+ *
+ * Every evaluation and every accepted or rejected move is recorded in a SearchMetrics, which is
+ * printed every REPORT_INTERVAL_MS while the wire count is running and once when it finishes.
+ *
  * When we refer to fitness, we mean the number of unsorted outputs generated from all binary
  * sequences ran on a given comparison network.
  *
@@ -82,124 +97,89 @@ import java.util.Set;
 
 public class RandomNetworksSimulatedAnnealing {
 
+    /**
+     * The cooling schedule of every run. Mutating one comparator of a 12-16 wire network moves
+     * the fitness by up to a few dozen, so annealing starts warm enough to accept most of those
+     * moves and ends cold enough to only go downhill.
+     */
+    static final IntFunction<CoolingSchedule> COOLING = CoolingSchedule.geometric(20, 0.1);
+
     private static final int NUM_ITERATIONS = 5;     // K
-    private static final int TEMPERATURE = 100000;  // M
+    private static final int NUM_MUTATIONS = 100000;  // M
     private static final int MIN_WIRES = 12;
     private static final int MAX_WIRES = 17;
     private static final boolean PRINT_DATA_FLAG = false;
+    private static final boolean COMPARE_HILL_CLIMBING = true;
+    private static final long REPORT_INTERVAL_MS = 10000;
     private static final Random rand = new Random();
 
     public static void main(String[] args) {
 
-        // map each num_wires to its best known length
-        HashMap<Integer, Integer> wiresToSize = new HashMap<>();
-        for (int i = MIN_WIRES; i < MAX_WIRES; i++) {
-            switch (i) {
-                case 12:
-                    wiresToSize.put(i, 39);
-                    break;
-                case 13:
-                    wiresToSize.put(i, 45);
-                    break;
-                case 14:
-                    wiresToSize.put(i, 51);
-                    break;
-                case 15:
-                    wiresToSize.put(i, 56);
-                    break;
-                case 16:
-                    wiresToSize.put(i, 60);
-                    break;
-            }
-        }
-
         // perform experiment for wire sizes of 12 - 16
         for (int i = MIN_WIRES; i < MAX_WIRES; i++) {
-            ComparisonNetwork bestOverallNetwork = new ComparisonNetwork(i);
-            Set<BinarySequence> bestOverallOutputs = new HashSet<>();
-            float avgFitness = 0;
+            final int numWires = i;
+            final int size = NetworkUtilities.bestKnownSize(i);
+            HillClimbingEngine.BoundedFitness<ComparisonNetwork> fitness =
+                    (network, cutoff) -> LayeredNetwork.depthPenalizedFitness(network, 0, cutoff);
             System.out.printf("WIRE %d%n-------%n", i);
 
-            // perform simulated annealing NUM_NETWORKS (K) times
-            for (int k = 0; k < NUM_ITERATIONS; k++) {
-                System.out.printf("Iteration %d%n", k);
-                ComparisonNetwork bestCurrentNetwork = createRandomNetwork(i, wiresToSize.get(i));
-                Set<BinarySequence> bestCurrentOutputs = bestCurrentNetwork.operateOnAllBinary();
-                avgFitness += bestCurrentOutputs.size();
-
-                // initialize first run-through
-                if (k == 0) {
-                    bestOverallNetwork = bestCurrentNetwork;
-                    bestOverallOutputs = bestCurrentOutputs;
-                }
-
-                // loop until system has cooled (for TEMPERATURE iterations)
-                for (int m = TEMPERATURE; m >= 0; m--) {
-                    ComparisonNetwork newNetwork = createRandomNetwork(i, wiresToSize.get(i));
-                    Set<BinarySequence> newOutputs = newNetwork.operateOnAllBinary();
-                    avgFitness += newOutputs.size();
-
-                    // simulated annealing process
-                    if (acceptanceProbability(bestCurrentOutputs.size(), newOutputs.size(),
-                            m) > Math.random()) {
-                        bestCurrentNetwork = newNetwork;
-                        bestCurrentOutputs = newOutputs;
-                    }
-                    //temperature *= coolingRate;
-                }
-                if (bestCurrentOutputs.size() < bestOverallOutputs.size()) {
-                    bestOverallNetwork = bestCurrentNetwork;
-                    bestOverallOutputs = bestCurrentOutputs;
-                }
-                System.out.printf("Iteration %d best fitness: %d%n", k, bestCurrentOutputs.size());
+            // perform simulated annealing NUM_ITERATIONS (K) times, one restart per core
+            SimulatedAnnealingEngine<ComparisonNetwork> engine = new SimulatedAnnealingEngine<>(
+                    r -> NetworkUtilities.createRandomNetwork(numWires, size, r),
+                    NetworkUtilities::copyMutate, fitness, COOLING);
+            SearchMetrics metrics = new SearchMetrics();
+            engine.setMetrics(metrics);
+            long seed = rand.nextLong();
+            HillClimbingEngine.Result<ComparisonNetwork> result;
+            SearchMetrics.Reporter reporter = metrics.startReporter(REPORT_INTERVAL_MS, System.out);
+            try {
+                result = engine.run(NUM_ITERATIONS, NUM_MUTATIONS, seed);
+            } finally {
+                reporter.close();
             }
-            avgFitness /= NUM_ITERATIONS * TEMPERATURE; // final step for calculating avg fitness
 
-            System.out.printf("Best fitness on %d wires with size %d: %d%n", i,
-                    wiresToSize.get(i), bestOverallOutputs.size());
-            System.out.printf("Average fitness on %d wires with size %d: %.3f%n%n", i,
-                    wiresToSize.get(i), avgFitness);
+            for (HillClimbingEngine.RestartResult<ComparisonNetwork> restart : result.getRestarts())
+                System.out.printf("Iteration %d on %d wires: best fitness %d after %d evaluations%n",
+                        restart.getRestart(), i, restart.getBestFitness(), restart.getEvaluationsToBest());
+            printEfficiency("Simulated annealing", i, size, result);
+
+            // hill climbing from the same starting networks, for the same number of evaluations
+            if (COMPARE_HILL_CLIMBING) {
+                HillClimbingEngine<ComparisonNetwork> hillClimbing = new HillClimbingEngine<>(
+                        r -> NetworkUtilities.createRandomNetwork(numWires, size, r),
+                        NetworkUtilities::copyMutate, fitness);
+                printEfficiency("Hill climbing", i, size,
+                        hillClimbing.run(NUM_ITERATIONS, NUM_MUTATIONS, seed));
+            }
+            System.out.println();
 
             if (PRINT_DATA_FLAG) {
-                NetworkUtilities.printUnsortedOutputs(bestOverallOutputs);
-                System.out.printf("The %d-comparison network that produced these outputs:%n", wiresToSize.get(i));
+                ComparisonNetwork bestOverallNetwork = result.getBestNetwork();
+                NetworkUtilities.printUnsortedOutputs(bestOverallNetwork.unsortedOutputSet());
+                System.out.printf("The %d-comparison network that produced these outputs:%n", size);
                 System.out.println(bestOverallNetwork);
             }
         }
     }
 
     /**
-     * Creates a ComparisonNetwork containing randomly assigned comparators.
-     *
-     * @return a random ComparisonNetwork object
-     */
-    private static ComparisonNetwork createRandomNetwork(int numWires, int numComparators) {
-        ComparisonNetwork randomNetwork = new ComparisonNetwork(numWires);
-        for (int i = 0; i < numComparators; i++) {
-            int randI = rand.nextInt(i + 1);
-            int randTop = rand.nextInt(numWires);
-            int randBottom = rand.nextInt(numWires);
-            randomNetwork.addComparator(randI, randTop, randBottom);
-        }
-        return randomNetwork;
-    }
-
-    /**
-     * Calculates and returns an acceptance probability for a given mutation based on fitness of
-     * the new mutation and temperature.
+     * Prints the best fitness of a run, and how far each restart got per evaluation: the drop
+     * from its starting fitness to its best, divided by the evaluations it took to get there.
      *
-     * @param fitness fitness of network without mutation
-     * @param newFitness fitness of newly mutated network
-     * @param temperature current temperature for simulated annealing
-     * @return 1.0 if the new network fitness is better than the current network, else an
-     * expected probability based on the current temperature.
+     * @param name the name of the algorithm
+     * @param numWires the number of wires in the networks
+     * @param size the number of comparators in the networks
+     * @param result the result of the run
      */
-    private static double acceptanceProbability(int fitness, int newFitness, double temperature) {
-        // if the fitness is lower, accept it
-        if (newFitness < fitness) {
-            return 1.0;
-        }
-        // else, calculate a probability of accepting the lower fitness
-        return Math.exp((fitness - newFitness) / temperature);
+    private static void printEfficiency(String name, int numWires, int size,
+                                        HillClimbingEngine.Result<ComparisonNetwork> result) {
+        double improvementPerEvaluation = 0;
+        for (HillClimbingEngine.RestartResult<ComparisonNetwork> restart : result.getRestarts())
+            improvementPerEvaluation += (double) (restart.getInitialFitness() - restart.getBestFitness()) /
+                    restart.getEvaluationsToBest();
+        improvementPerEvaluation /= result.getRestarts().size();
+        System.out.printf("%s best fitness on %d wires with size %d: %d after %d evaluations " +
+                "(%.5f fitness per evaluation to best)%n", name, numWires, size,
+                result.getBestFitness(), result.getEvaluations(), improvementPerEvaluation);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,174 @@
+package simd;
+
+import environment.Comparator;
+import environment.ComparisonNetwork;
+import environment.OutputSet;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A class that evaluates a comparison network on all binary inputs using the Vector API.
+ *
+ * This is the bit-sliced evaluation used by ComparisonNetwork.unsortedOutputSet(), widened
+ * across SIMD lanes: every wire is a LongVector whose lanes each hold 64 inputs, so one
+ * comparator sorts 256 inputs per AND/OR on AVX2 and 512 on AVX-512. Inputs are numbered as in
+ * PackedBinarySequence (wire 0 is the most significant bit), and lane i of a vector holds
+ * block b + i, where block b covers inputs 64b to 64b + 63.
+ *
+ * On CPUs whose preferred vector holds a single long, or for networks too small to fill one
+ * vector, the scalar bit-sliced evaluator is used instead.
+ *
+ * The Vector API is an incubator module, so this package is compiled and run with
+ * --add-modules jdk.incubator.vector. The rest of the code does not depend on it.
+ */
+public class VectorEvaluator {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    // bit j of LANE_PATTERNS[p] is bit p of the index j of an input within its block
+    private static final long[] LANE_PATTERNS = {
+            0xAAAAAAAAAAAAAAAAL,
+            0xCCCCCCCCCCCCCCCCL,
+            0xF0F0F0F0F0F0F0F0L,
+            0xFF00FF00FF00FF00L,
+            0xFFFF0000FFFF0000L,
+            0xFFFFFFFF00000000L
+    };
+
+    private VectorEvaluator() {
+    }
+
+    /**
+     * @return true if this CPU has vectors wider than a single long
+     */
+    public static boolean isAccelerated() {
+        return SPECIES.length() > 1;
+    }
+
+    /**
+     * Evaluates the network on every binary input and collects the unsorted outputs.
+     *
+     * @param network the network to evaluate
+     * @return the unsorted outputs produced by the network
+     */
+    public static OutputSet unsortedOutputSet(ComparisonNetwork network) {
+        if (!canVectorize(network))
+            return network.unsortedOutputSet();
+        OutputSet unsortedOutputs = new OutputSet(network.numWires());
+        evaluate(network, unsortedOutputs, Integer.MAX_VALUE);
+        return unsortedOutputs;
+    }
+
+    /**
+     * Counts the distinct unsorted outputs of the network on every binary input, giving up as
+     * soon as the count reaches the cutoff.
+     *
+     * @param network the network to evaluate
+     * @param cutoff the count at which to stop evaluating
+     * @return the number of distinct unsorted outputs, or cutoff if there are at least that many
+     */
+    public static int countUnsorted(ComparisonNetwork network, int cutoff) {
+        if (!canVectorize(network))
+            return network.countUnsorted(cutoff);
+        OutputSet unsortedOutputs = new OutputSet(network.numWires());
+        evaluate(network, unsortedOutputs, cutoff);
+        return Math.min(unsortedOutputs.size(), cutoff);
+    }
+
+    /**
+     * @param network a comparison network
+     * @return true if the network has enough inputs to fill every lane of a vector
+     */
+    private static boolean canVectorize(ComparisonNetwork network) {
+        return isAccelerated() && network.numWires() >= 6 + log2(SPECIES.length());
+    }
+
+    /**
+     * Runs every input through the network, a whole vector of blocks at a time.
+     *
+     * @param network the network to evaluate
+     * @param unsortedOutputs the OutputSet that the unsorted outputs are added to
+     * @param cutoff the number of unsorted outputs at which to stop evaluating
+     */
+    private static void evaluate(ComparisonNetwork network, OutputSet unsortedOutputs, int cutoff) {
+        int numWires = network.numWires();
+        int lanes = SPECIES.length();
+        int laneBits = log2(lanes);
+        int size = network.size();
+        int[] tops = new int[size];
+        int[] bottoms = new int[size];
+        for (int i = 0; i < size; i++) {
+            Comparator c = network.getNetwork().get(i);
+            tops[i] = c.getTopWire();
+            bottoms[i] = c.getBottomWire();
+        }
+
+        // the wires are kept in one array, lanes words per wire, so that every vector is
+        // loaded from and stored to memory rather than held in an array of vector objects
+        // (which the JIT cannot keep in registers)
+        long[] wires = new long[numWires * lanes];
+        long numVectors = 1L << (numWires - 6 - laneBits);
+
+        for (long v = 0; v < numVectors && unsortedOutputs.size() < cutoff; v++) {
+            loadVector(wires, numWires, lanes, v << laneBits);
+
+            for (int i = 0; i < size; i++) {
+                LongVector top = LongVector.fromArray(SPECIES, wires, tops[i] * lanes);
+                LongVector bottom = LongVector.fromArray(SPECIES, wires, bottoms[i] * lanes);
+                top.and(bottom).intoArray(wires, tops[i] * lanes);
+                top.or(bottom).intoArray(wires, bottoms[i] * lanes);
+            }
+
+            LongVector unsorted = LongVector.zero(SPECIES);
+            LongVector above = LongVector.fromArray(SPECIES, wires, 0);
+            for (int w = 1; w < numWires; w++) {
+                LongVector below = LongVector.fromArray(SPECIES, wires, w * lanes);
+                unsorted = unsorted.or(above.and(below.not()));
+                above = below;
+            }
+            if (unsorted.reduceLanes(VectorOperators.OR) == 0)
+                continue;
+
+            for (int i = 0; i < lanes; i++) {
+                long unsortedInLane = unsorted.lane(i);
+                while (unsortedInLane != 0) {
+                    int j = Long.numberOfTrailingZeros(unsortedInLane);
+                    long output = 0;
+                    for (int w = 0; w < numWires; w++)
+                        output = (output << 1) | ((wires[w * lanes + i] >>> j) & 1);
+                    unsortedOutputs.add(output);
+                    unsortedInLane &= unsortedInLane - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the wire words with the inputs of lanes consecutive blocks.
+     *
+     * @param wires the wire words, lanes words per wire
+     * @param numWires the number of wires
+     * @param lanes the number of blocks in a vector
+     * @param firstBlock the block held in the first lane
+     */
+    private static void loadVector(long[] wires, int numWires, int lanes, long firstBlock) {
+        for (int w = 0; w < numWires; w++) {
+            int bit = numWires - 1 - w;
+            for (int i = 0; i < lanes; i++) {
+                if (bit < 6)
+                    wires[w * lanes + i] = LANE_PATTERNS[bit];
+                else
+                    wires[w * lanes + i] = (((firstBlock + i) >>> (bit - 6)) & 1) == 0 ? 0 : -1L;
+            }
+        }
+    }
+
+    /**
+     * @param n a power of two
+     * @return the base 2 logarithm of n
+     */
+    private static int log2(int n) {
+        return Integer.numberOfTrailingZeros(n);
+    }
+}